@@ -0,0 +1,898 @@
+package geometries;
+
+import primitives.AABB;
+import primitives.CBR;
+import primitives.Double3;
+import primitives.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds a bounding volume hierarchy (BVH) over a set of bounded geometries
+ * using the binned surface area heuristic (SAH).
+ * <p>
+ * At every node the centroids of the primitives are distributed into a fixed number of bins
+ * along each axis, and the split plane between two bins with the lowest SAH cost is chosen.
+ * Each level costs a linear pass over its primitives, so the whole build runs in O(n log n).
+ * The tree is built to full depth, until a node holds no more than the leaf size threshold.
+ * <p>
+ * The builder produces an abstract tree of {@link Node}s over a range of the primitive array,
+ * which is reordered in place so the primitives of every node are contiguous.
+ * {@link Geometries} turns the tree into nested geometries collections.
+ * <p>
+ * Large nodes are built in parallel on the common {@link ForkJoinPool}: the two subtrees of a node
+ * are built concurrently, and the bounds of its primitives are reduced in parallel. Every node
+ * works on its own range of the primitive array and all the decisions depend only on that range,
+ * so the parallel build produces exactly the same tree as the sequential one.
+ */
+public class BVHBuilder {
+    /** Default amount of bins per axis */
+    public static final int DEFAULT_BIN_COUNT = 16;
+    /** Default maximal amount of primitives in a leaf */
+    public static final int DEFAULT_MAX_LEAF_SIZE = 4;
+    /** Default SAH cost growth, relative to the cost at build time, above which a refit is replaced by a rebuild */
+    public static final double DEFAULT_REBUILD_THRESHOLD = 1.5;
+    /** Maximal spatial split budget - duplicated references, as a fraction of the primitives */
+    public static final double MAX_SPATIAL_SPLIT_BUDGET = 4;
+
+    /** Relative cost of traversing a node, compared to intersecting a primitive */
+    static final double TRAVERSAL_COST = 1.0;
+    /** Relative cost of intersecting a primitive */
+    static final double INTERSECTION_COST = 1.0;
+    /** Below this depth the SAH splits are replaced by object median splits, to bound the tree depth */
+    private static final int MAX_SAH_DEPTH = 48;
+    /** Below this amount of primitives subtrees and bounds reductions are processed sequentially */
+    private static final int PARALLEL_THRESHOLD = 4096;
+    /**
+     * Spatial splits are tried only when the children of the best object split overlap by more than
+     * this fraction of the root surface area
+     */
+    private static final double SPATIAL_SPLIT_OVERLAP = 1e-5;
+
+    private int binCount = DEFAULT_BIN_COUNT;
+    private int maxLeafSize = DEFAULT_MAX_LEAF_SIZE;
+    private boolean parallel = true;
+    private double rebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+    private double spatialSplitBudget = 0;
+
+    /**
+     * Statistics of a built hierarchy.
+     *
+     * @param primitives     amount of bounded primitives in the hierarchy
+     * @param unbounded      amount of unbounded geometries left outside the hierarchy
+     * @param nodes          total amount of nodes (interior and leaves)
+     * @param leaves         amount of leaf nodes
+     * @param maxDepth       depth of the deepest leaf (the root is at depth 0)
+     * @param sahCost        SAH cost of the whole tree, relative to the root surface area
+     * @param buildTimeNanos wall-clock build time in nanoseconds
+     */
+    public record Statistics(int primitives, int unbounded, int nodes, int leaves, int maxDepth,
+                             double sahCost, long buildTimeNanos) {
+        /**
+         * Returns the build time in milliseconds.
+         *
+         * @return build time in milliseconds
+         */
+        public double buildTimeMillis() {
+            return buildTimeNanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * A node of the built hierarchy. A leaf refers to {@code count} primitives starting at
+     * {@code start} in the reordered primitive array, an interior node has two children.
+     */
+    static final class Node {
+        /** Node bounds: min x, y, z followed by max x, y, z */
+        final double[] bounds;
+        /** Index of the first primitive of the node in the reordered primitive array */
+        final int start;
+        /** Amount of primitives under the node */
+        final int count;
+        /** Split axis of an interior node (0 = x, 1 = y, 2 = z) */
+        int axis;
+        /** Left child, {@code null} for a leaf */
+        Node left;
+        /** Right child, {@code null} for a leaf */
+        Node right;
+
+        Node(double[] bounds, int start, int count) {
+            this.bounds = bounds;
+            this.start = start;
+            this.count = count;
+        }
+
+        boolean isLeaf() {
+            return left == null;
+        }
+    }
+
+    /**
+     * Sets the amount of bins per axis used to evaluate split candidates.
+     *
+     * @param binCount amount of bins, at least 2
+     * @return this builder (for chaining)
+     */
+    public BVHBuilder setBinCount(int binCount) {
+        if (binCount < 2)
+            throw new IllegalArgumentException("Bin count must be at least 2");
+        this.binCount = binCount;
+        return this;
+    }
+
+    /**
+     * Sets the leaf size threshold - nodes with this amount of primitives or less become leaves.
+     *
+     * @param maxLeafSize maximal amount of primitives in a leaf, at least 1
+     * @return this builder (for chaining)
+     */
+    public BVHBuilder setMaxLeafSize(int maxLeafSize) {
+        if (maxLeafSize < 1)
+            throw new IllegalArgumentException("Leaf size must be at least 1");
+        this.maxLeafSize = maxLeafSize;
+        return this;
+    }
+
+    /**
+     * Returns the amount of bins per axis used to evaluate split candidates.
+     *
+     * @return amount of bins
+     */
+    public int getBinCount() {
+        return binCount;
+    }
+
+    /**
+     * Returns the leaf size threshold.
+     *
+     * @return maximal amount of primitives in a leaf
+     */
+    public int getMaxLeafSize() {
+        return maxLeafSize;
+    }
+
+    /**
+     * Enables spatial splits (SBVH) for compiled hierarchies, with a memory budget for the duplicated
+     * references. Where the children of an object split would overlap heavily - as for long, thin
+     * triangles - a split plane may instead cut primitives, whose references are then placed in both
+     * children with their bounds clipped to each side (exactly, for polygons and triangles).
+     * Spatial splits are used by {@link Geometries#compileBVH(BVHBuilder)}, and built sequentially.
+     *
+     * @param budget the maximal amount of duplicated references, as a fraction of the primitives,
+     *               between 0 (the default, object splits only) and {@link #MAX_SPATIAL_SPLIT_BUDGET}
+     * @return this builder (for chaining)
+     */
+    public BVHBuilder setSpatialSplitBudget(double budget) {
+        if (!(budget >= 0 && budget <= MAX_SPATIAL_SPLIT_BUDGET))
+            throw new IllegalArgumentException("Spatial split budget must be between 0 and " + MAX_SPATIAL_SPLIT_BUDGET);
+        this.spatialSplitBudget = budget;
+        return this;
+    }
+
+    /**
+     * Returns the memory budget of spatial splits.
+     *
+     * @return the maximal amount of duplicated references, as a fraction of the primitives
+     * @see #setSpatialSplitBudget(double)
+     */
+    public double getSpatialSplitBudget() {
+        return spatialSplitBudget;
+    }
+
+    /**
+     * Sets whether large nodes are built in parallel. Both modes produce the same tree.
+     *
+     * @param parallel true to build in parallel (the default), false to build on the calling thread only
+     * @return this builder (for chaining)
+     */
+    public BVHBuilder setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Sets the quality threshold of refitting: when refitting a hierarchy grows its SAH cost by more
+     * than this factor, relative to the cost at build time, the hierarchy is rebuilt instead.
+     *
+     * @param rebuildThreshold the allowed cost growth factor, at least 1
+     * @return this builder (for chaining)
+     */
+    public BVHBuilder setRebuildThreshold(double rebuildThreshold) {
+        if (rebuildThreshold < 1)
+            throw new IllegalArgumentException("Rebuild threshold must be at least 1");
+        this.rebuildThreshold = rebuildThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the quality threshold of refitting.
+     *
+     * @return the allowed SAH cost growth factor
+     * @see #setRebuildThreshold(double)
+     */
+    public double getRebuildThreshold() {
+        return rebuildThreshold;
+    }
+
+    /**
+     * Builds a hierarchy over the given bounded primitives. The array is reordered in place
+     * so the primitives of every node are contiguous.
+     *
+     * @param primitives the primitives, each must have an {@link AABB} bounding box
+     * @return the root of the hierarchy, or {@code null} if there are no primitives
+     */
+    Node buildTree(Intersectable[] primitives) {
+        return buildTree(primitives, new int[primitives.length]);
+    }
+
+    /**
+     * Builds a hierarchy over the given bounded primitives. The array is reordered in place
+     * so the primitives of every node are contiguous.
+     *
+     * @param primitives the primitives, each must have an {@link AABB} bounding box
+     * @param order      array of the primitives' length, to receive the original index of every reordered primitive
+     * @return the root of the hierarchy, or {@code null} if there are no primitives
+     */
+    Node buildTree(Intersectable[] primitives, int[] order) {
+        int n = primitives.length;
+        if (n == 0) return null;
+
+        Node root = buildTree(primitiveBoxes(primitives), order);
+
+        Intersectable[] original = primitives.clone();
+        for (int i = 0; i < n; i++)
+            primitives[i] = original[order[i]];
+        return root;
+    }
+
+    /**
+     * Builds a hierarchy over primitives given by their bounding boxes only (e.g. the faces of a
+     * {@link TriangleMesh}). The nodes refer to ranges of the primitive order.
+     *
+     * @param boxes primitive bounds, 6 values per primitive
+     * @param order array of the primitives' amount, to receive the original index of the primitive at
+     *              every position of the primitive order
+     * @return the root of the hierarchy, or {@code null} if there are no primitives
+     */
+    Node buildTree(double[] boxes, int[] order) {
+        int n = boxes.length / 6;
+        if (n == 0) return null;
+
+        double[] centroids = centroids(boxes, n);
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+
+        return parallel && n >= PARALLEL_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> build(boxes, centroids, order, 0, n, 0)))
+                : build(boxes, centroids, order, 0, n, 0);
+    }
+
+    /**
+     * A hierarchy built for compilation, with the references of its leaves.
+     *
+     * @param root  the root of the hierarchy, or {@code null} if there are no primitives
+     * @param order the original index of the primitive of every reference, in leaf order;
+     *              with spatial splits a primitive may be referenced more than once
+     */
+    record Tree(Node root, int[] order) {
+        /**
+         * Resolves the references of the leaves.
+         *
+         * @param primitives the primitives, in their original order
+         * @return the referenced primitives, in leaf order
+         */
+        Intersectable[] references(Intersectable[] primitives) {
+            Intersectable[] references = new Intersectable[order.length];
+            for (int i = 0; i < order.length; i++)
+                references[i] = primitives[order[i]];
+            return references;
+        }
+    }
+
+    /**
+     * Builds a hierarchy over the given bounded primitives for compilation into a {@link LinearBVH},
+     * using spatial splits if {@link #setSpatialSplitBudget(double) enabled}. The array is not modified.
+     *
+     * @param primitives the primitives, each must have an {@link AABB} bounding box
+     * @return the built hierarchy
+     */
+    Tree buildLinearTree(Intersectable[] primitives) {
+        if (spatialSplitBudget == 0 || primitives.length == 0) {
+            int[] order = new int[primitives.length];
+            return new Tree(buildTree(primitives.clone(), order), order);
+        }
+        return new SpatialBuild(primitives).run();
+    }
+
+    /**
+     * Collects the bounding boxes of the primitives.
+     *
+     * @return primitive bounds, 6 values per primitive
+     */
+    private static double[] primitiveBoxes(Intersectable[] primitives) {
+        double[] boxes = new double[6 * primitives.length];
+        for (int i = 0; i < primitives.length; i++) {
+            CBR cbr = primitives[i].getBoundingBox();
+            if (!(cbr instanceof AABB box))
+                throw new IllegalArgumentException("BVH primitives must have an AABB bounding box");
+            boxes[6 * i] = box.getX_min();
+            boxes[6 * i + 1] = box.getY_min();
+            boxes[6 * i + 2] = box.getZ_min();
+            boxes[6 * i + 3] = box.getX_max();
+            boxes[6 * i + 4] = box.getY_max();
+            boxes[6 * i + 5] = box.getZ_max();
+        }
+        return boxes;
+    }
+
+    /**
+     * Computes the box centers.
+     *
+     * @return box centers, 3 values per box
+     */
+    private static double[] centroids(double[] boxes, int count) {
+        double[] centroids = new double[3 * count];
+        for (int i = 0; i < count; i++)
+            for (int axis = 0; axis < 3; axis++)
+                centroids[3 * i + axis] = (boxes[6 * i + axis] + boxes[6 * i + 3 + axis]) / 2;
+        return centroids;
+    }
+
+    /**
+     * Recursively builds the node over the primitives {@code order[start..end)}.
+     *
+     * @param boxes     primitive bounds, 6 values per primitive
+     * @param centroids primitive box centers, 3 values per primitive
+     * @param order     primitive indices, partitioned in place
+     * @param start     first index of the range
+     * @param end       end index of the range (exclusive)
+     * @param depth     depth of the node
+     * @return the built node
+     */
+    private Node build(double[] boxes, double[] centroids, int[] order, int start, int end, int depth) {
+        int count = end - start;
+        Node node = new Node(rangeBounds(boxes, order, start, end), start, count);
+        if (count <= maxLeafSize)
+            return node;
+
+        double[] centroidBounds = centroidBounds(centroids, order, start, end);
+        int mid = depth < MAX_SAH_DEPTH
+                ? sahPartition(node, boxes, centroids, centroidBounds, order, start, end)
+                : -1;
+        if (mid <= start || mid >= end)
+            mid = medianPartition(node, centroids, centroidBounds, order, start, end);
+
+        if (parallel && count >= PARALLEL_THRESHOLD) {
+            final int split = mid;
+            ForkJoinTask<Node> left = ForkJoinTask.adapt(
+                    () -> build(boxes, centroids, order, start, split, depth + 1)).fork();
+            node.right = build(boxes, centroids, order, mid, end, depth + 1);
+            node.left = left.join();
+        } else {
+            node.left = build(boxes, centroids, order, start, mid, depth + 1);
+            node.right = build(boxes, centroids, order, mid, end, depth + 1);
+        }
+        return node;
+    }
+
+    /**
+     * Chooses the cheapest binned SAH split and partitions the range accordingly.
+     *
+     * @return the partition index, or -1 if no valid split was found
+     */
+    private int sahPartition(Node node, double[] boxes, double[] centroids, double[] centroidBounds,
+                             int[] order, int start, int end) {
+        double[] split = bestObjectSplit(boxes, centroids, centroidBounds, order, start, end);
+        if (split == null)
+            return -1;
+        node.axis = (int) split[1];
+        return partition(centroids, centroidBounds, order, start, end, node.axis, (int) split[2]);
+    }
+
+    /**
+     * Finds the cheapest binned SAH split of the range by the primitive centroids.
+     *
+     * @return the cost (area times count, unnormalized), axis and last bin of the left side of the split,
+     * or {@code null} if no valid split was found
+     */
+    private double[] bestObjectSplit(double[] boxes, double[] centroids, double[] centroidBounds,
+                                     int[] order, int start, int end) {
+        int[] binCounts = new int[binCount];
+        double[] binBounds = new double[6 * binCount];
+        double[] rightAreas = new double[binCount];
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestBin = -1;
+
+        for (int axis = 0; axis < 3; axis++) {
+            double min = centroidBounds[axis];
+            double extent = centroidBounds[3 + axis] - min;
+            if (extent <= 0) continue;
+            double scale = binCount / extent;
+
+            Arrays.fill(binCounts, 0);
+            for (int b = 0; b < binCount; b++)
+                emptyBounds(binBounds, 6 * b);
+            for (int i = start; i < end; i++) {
+                int p = order[i];
+                int b = binIndex(centroids[3 * p + axis], min, scale);
+                binCounts[b]++;
+                growBounds(binBounds, 6 * b, boxes, 6 * p);
+            }
+
+            // sweep from the right to collect the right side areas
+            double[] acc = emptyBounds(new double[6], 0);
+            int rightCount = 0;
+            for (int b = binCount - 1; b > 0; b--) {
+                if (binCounts[b] > 0) growBounds(acc, 0, binBounds, 6 * b);
+                rightCount += binCounts[b];
+                rightAreas[b] = rightCount == 0 ? 0 : surfaceArea(acc, 0) * rightCount;
+            }
+
+            // sweep from the left evaluating the split after every bin
+            emptyBounds(acc, 0);
+            int leftCount = 0;
+            for (int b = 0; b < binCount - 1; b++) {
+                if (binCounts[b] > 0) growBounds(acc, 0, binBounds, 6 * b);
+                leftCount += binCounts[b];
+                if (leftCount == 0 || leftCount == end - start) continue;
+                double cost = surfaceArea(acc, 0) * leftCount + rightAreas[b + 1];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = b;
+                }
+            }
+        }
+
+        return bestAxis == -1 ? null : new double[]{bestCost, bestAxis, bestBin};
+    }
+
+    /**
+     * Partitions the range by the centroid bins along the axis.
+     *
+     * @return the partition index - the start of the right side
+     */
+    private int partition(double[] centroids, double[] centroidBounds, int[] order, int start, int end,
+                          int axis, int lastLeftBin) {
+        double min = centroidBounds[axis];
+        double scale = binCount / (centroidBounds[3 + axis] - min);
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (binIndex(centroids[3 * order[i] + axis], min, scale) <= lastLeftBin)
+                i++;
+            else
+                swap(order, i, j--);
+        }
+        return i;
+    }
+
+    /**
+     * Splits the range in half by the centroid order along the longest centroid axis.
+     * Used when no SAH split separates the primitives (e.g. all centroids coincide).
+     *
+     * @return the partition index
+     */
+    private int medianPartition(Node node, double[] centroids, double[] centroidBounds,
+                                int[] order, int start, int end) {
+        int axis = 0;
+        for (int a = 1; a < 3; a++)
+            if (centroidBounds[3 + a] - centroidBounds[a] > centroidBounds[3 + axis] - centroidBounds[axis])
+                axis = a;
+        node.axis = axis;
+
+        final int sortAxis = axis;
+        Integer[] sorted = new Integer[end - start];
+        for (int i = start; i < end; i++)
+            sorted[i - start] = order[i];
+        Arrays.sort(sorted, Comparator.comparingDouble(p -> centroids[3 * p + sortAxis]));
+        for (int i = start; i < end; i++)
+            order[i] = sorted[i - start];
+        return start + (end - start) / 2;
+    }
+
+    /**
+     * Sequential build with spatial splits. Every node works on its own arrays of references -
+     * a primitive index with a bounding box, which is clipped when the reference is split.
+     */
+    private final class SpatialBuild {
+        private final Intersectable[] primitives;
+        /** Primitive of every reference, in leaf order - grown as the duplicated references are emitted */
+        private int[] order;
+        /** Amount of references emitted to leaves */
+        private int size;
+        /** Amount of duplicated references still allowed */
+        private int remaining;
+        private double rootArea;
+
+        private SpatialBuild(Intersectable[] primitives) {
+            this.primitives = primitives;
+            this.remaining = (int) Math.min(spatialSplitBudget * primitives.length, Integer.MAX_VALUE - primitives.length);
+            this.order = new int[primitives.length];
+        }
+
+        private Tree run() {
+            int n = primitives.length;
+            int[] references = new int[n];
+            for (int i = 0; i < n; i++)
+                references[i] = i;
+            double[] boxes = primitiveBoxes(primitives);
+            rootArea = surfaceArea(rangeBounds(boxes, identity(n), 0, n), 0);
+            Node root = build(references, boxes, 0);
+            return new Tree(root, Arrays.copyOf(order, size));
+        }
+
+        /**
+         * Recursively builds the node over the references.
+         *
+         * @param references primitive index of every reference
+         * @param boxes      bounds of every reference, 6 values per reference
+         * @param depth      depth of the node
+         * @return the built node
+         */
+        private Node build(int[] references, double[] boxes, int depth) {
+            int count = references.length;
+            int[] local = identity(count);
+            Node node = new Node(rangeBounds(boxes, local, 0, count), size, count);
+            if (count <= maxLeafSize) {
+                if (size + count > order.length)
+                    order = Arrays.copyOf(order, Math.max(size + count, order.length + (order.length >> 1)));
+                System.arraycopy(references, 0, order, size, count);
+                size += count;
+                return node;
+            }
+
+            double[] centroids = centroids(boxes, count);
+            double[] centroidBounds = centroidBounds(centroids, local, 0, count);
+            double[] split = depth < MAX_SAH_DEPTH
+                    ? bestObjectSplit(boxes, centroids, centroidBounds, local, 0, count)
+                    : null;
+            int mid = -1;
+            if (split != null) {
+                node.axis = (int) split[1];
+                mid = partition(centroids, centroidBounds, local, 0, count, node.axis, (int) split[2]);
+                if (remaining > 0 && rootArea > 0 && overlapArea(rangeBounds(boxes, local, 0, mid),
+                        rangeBounds(boxes, local, mid, count)) / rootArea > SPATIAL_SPLIT_OVERLAP) {
+                    double[] spatial = bestSpatialSplit(references, boxes, node.bounds);
+                    if (spatial != null && spatial[0] < split[0]) {
+                        int duplicates = (int) spatial[3] + (int) spatial[4] - count;
+                        if (duplicates <= remaining) {
+                            remaining -= duplicates;
+                            node.axis = (int) spatial[1];
+                            splitSpatially(node, references, boxes, (int) spatial[2], (int) spatial[3],
+                                    (int) spatial[4], depth);
+                            return node;
+                        }
+                    }
+                }
+            }
+            if (mid <= 0 || mid >= count)
+                mid = medianPartition(node, centroids, centroidBounds, local, 0, count);
+
+            node.left = build(select(references, local, 0, mid), selectBoxes(boxes, local, 0, mid), depth + 1);
+            node.right = build(select(references, local, mid, count), selectBoxes(boxes, local, mid, count), depth + 1);
+            return node;
+        }
+
+        /**
+         * Finds the cheapest binned SAH split plane cutting the node bounds into equal bins. References
+         * are counted where they enter and exit, and grow every bin they span by their part inside it.
+         *
+         * @return the cost, axis, last bin of the left side and the amounts of left and right references,
+         * or {@code null} if no valid split was found
+         */
+        private double[] bestSpatialSplit(int[] references, double[] boxes, double[] bounds) {
+            int count = references.length;
+            int[] entries = new int[binCount];
+            int[] exits = new int[binCount];
+            double[] binBounds = new double[6 * binCount];
+            double[] rightAreas = new double[binCount];
+            int[] rightCounts = new int[binCount];
+            double[] clipped = new double[6];
+            double[] best = null;
+
+            for (int axis = 0; axis < 3; axis++) {
+                double min = bounds[axis];
+                double extent = bounds[3 + axis] - min;
+                if (extent <= 0) continue;
+                double binSize = extent / binCount;
+
+                Arrays.fill(entries, 0);
+                Arrays.fill(exits, 0);
+                for (int b = 0; b < binCount; b++)
+                    emptyBounds(binBounds, 6 * b);
+                for (int r = 0; r < count; r++) {
+                    int first = binIndex(boxes[6 * r + axis], min, 1 / binSize);
+                    int last = binIndex(boxes[6 * r + 3 + axis], min, 1 / binSize);
+                    entries[first]++;
+                    exits[last]++;
+                    for (int b = first; b <= last; b++) {
+                        clip(references[r], boxes, 6 * r, axis, min + b * binSize,
+                                b == binCount - 1 ? bounds[3 + axis] : min + (b + 1) * binSize, clipped);
+                        growBounds(binBounds, 6 * b, clipped, 0);
+                    }
+                }
+
+                double[] acc = emptyBounds(new double[6], 0);
+                int rightCount = 0;
+                for (int b = binCount - 1; b > 0; b--) {
+                    growBounds(acc, 0, binBounds, 6 * b);
+                    rightCount += exits[b];
+                    rightCounts[b] = rightCount;
+                    rightAreas[b] = rightCount == 0 ? 0 : surfaceArea(acc, 0) * rightCount;
+                }
+
+                emptyBounds(acc, 0);
+                int leftCount = 0;
+                for (int b = 0; b < binCount - 1; b++) {
+                    growBounds(acc, 0, binBounds, 6 * b);
+                    leftCount += entries[b];
+                    if (leftCount == 0 || rightCounts[b + 1] == 0) continue;
+                    double cost = surfaceArea(acc, 0) * leftCount + rightAreas[b + 1];
+                    if (best == null || cost < best[0])
+                        best = new double[]{cost, axis, b, leftCount, rightCounts[b + 1]};
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Splits the references by the plane after the given bin, clipping the references it cuts into both sides.
+         */
+        private void splitSpatially(Node node, int[] references, double[] boxes, int lastLeftBin,
+                                    int leftCount, int rightCount, int depth) {
+            int axis = node.axis;
+            double min = node.bounds[axis];
+            double binSize = (node.bounds[3 + axis] - min) / binCount;
+            double plane = min + (lastLeftBin + 1) * binSize;
+            int[] leftReferences = new int[leftCount];
+            int[] rightReferences = new int[rightCount];
+            double[] leftBoxes = new double[6 * leftCount];
+            double[] rightBoxes = new double[6 * rightCount];
+            double[] clipped = new double[6];
+            int left = 0;
+            int right = 0;
+            for (int r = 0; r < references.length; r++) {
+                int first = binIndex(boxes[6 * r + axis], min, 1 / binSize);
+                int last = binIndex(boxes[6 * r + 3 + axis], min, 1 / binSize);
+                if (first <= lastLeftBin) {
+                    if (last <= lastLeftBin)
+                        System.arraycopy(boxes, 6 * r, clipped, 0, 6);
+                    else
+                        clip(references[r], boxes, 6 * r, axis, node.bounds[axis], plane, clipped);
+                    leftReferences[left] = references[r];
+                    System.arraycopy(clipped, 0, leftBoxes, 6 * left++, 6);
+                }
+                if (last > lastLeftBin) {
+                    if (first > lastLeftBin)
+                        System.arraycopy(boxes, 6 * r, clipped, 0, 6);
+                    else
+                        clip(references[r], boxes, 6 * r, axis, plane, node.bounds[3 + axis], clipped);
+                    rightReferences[right] = references[r];
+                    System.arraycopy(clipped, 0, rightBoxes, 6 * right++, 6);
+                }
+            }
+            node.left = build(leftReferences, leftBoxes, depth + 1);
+            node.right = build(rightReferences, rightBoxes, depth + 1);
+        }
+
+        /**
+         * Clips the bounds of a reference to a slab along an axis. A polygon (or triangle) is clipped
+         * exactly, so its clipped bounds also shrink along the other axes.
+         *
+         * @param primitive the primitive of the reference
+         * @param boxes     reference bounds
+         * @param offset    offset of the reference bounds
+         * @param axis      the slab axis
+         * @param low       the slab start along the axis
+         * @param high      the slab end along the axis
+         * @param clipped   receives the clipped bounds
+         */
+        private void clip(int primitive, double[] boxes, int offset, int axis, double low, double high,
+                          double[] clipped) {
+            System.arraycopy(boxes, offset, clipped, 0, 6);
+            clipped[axis] = Math.max(clipped[axis], low);
+            clipped[3 + axis] = Math.min(clipped[3 + axis], high);
+            if (!(primitives[primitive] instanceof Polygon polygon)) return;
+
+            double[] polygonBounds = clipPolygon(polygon.vertices, axis, low, high);
+            if (polygonBounds == null) return;
+            for (int a = 0; a < 3; a++) {
+                double from = Math.max(clipped[a], polygonBounds[a]);
+                double to = Math.min(clipped[3 + a], polygonBounds[3 + a]);
+                if (from > to) return; // numerically disjoint - keep the box clip
+                polygonBounds[a] = from;
+                polygonBounds[3 + a] = to;
+            }
+            System.arraycopy(polygonBounds, 0, clipped, 0, 6);
+        }
+    }
+
+    /**
+     * Clips a polygon to a slab along an axis (Sutherland-Hodgman against the two slab planes).
+     *
+     * @param vertices the polygon vertices
+     * @param axis     the slab axis
+     * @param low      the slab start along the axis
+     * @param high     the slab end along the axis
+     * @return the bounds of the clipped polygon, or {@code null} if nothing is left
+     */
+    private static double[] clipPolygon(List<Point> vertices, int axis, double low, double high) {
+        List<double[]> polygon = new ArrayList<>(vertices.size());
+        for (Point vertex : vertices) {
+            Double3 xyz = vertex.get_xyz();
+            polygon.add(new double[]{xyz.d1(), xyz.d2(), xyz.d3()});
+        }
+        polygon = clipPolygon(polygon, axis, low, 1);
+        polygon = clipPolygon(polygon, axis, high, -1);
+        if (polygon.isEmpty()) return null;
+        double[] bounds = emptyBounds(new double[6], 0);
+        for (double[] p : polygon)
+            for (int a = 0; a < 3; a++) {
+                bounds[a] = Math.min(bounds[a], p[a]);
+                bounds[3 + a] = Math.max(bounds[3 + a], p[a]);
+            }
+        return bounds;
+    }
+
+    /**
+     * Clips a polygon to the half space {@code side * (p[axis] - plane) >= 0}.
+     */
+    private static List<double[]> clipPolygon(List<double[]> polygon, int axis, double plane, int side) {
+        List<double[]> result = new ArrayList<>(polygon.size() + 1);
+        int n = polygon.size();
+        for (int i = 0; i < n; i++) {
+            double[] a = polygon.get(i);
+            double[] b = polygon.get((i + 1) % n);
+            double da = side * (a[axis] - plane);
+            double db = side * (b[axis] - plane);
+            if (da >= 0) result.add(a);
+            if ((da >= 0) != (db >= 0)) {
+                double t = da / (da - db);
+                double[] p = new double[3];
+                for (int c = 0; c < 3; c++)
+                    p[c] = a[c] + t * (b[c] - a[c]);
+                p[axis] = plane;
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    private static int[] identity(int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        return order;
+    }
+
+    private static int[] select(int[] values, int[] order, int start, int end) {
+        int[] selected = new int[end - start];
+        for (int i = start; i < end; i++)
+            selected[i - start] = values[order[i]];
+        return selected;
+    }
+
+    private static double[] selectBoxes(double[] boxes, int[] order, int start, int end) {
+        double[] selected = new double[6 * (end - start)];
+        for (int i = start; i < end; i++)
+            System.arraycopy(boxes, 6 * order[i], selected, 6 * (i - start), 6);
+        return selected;
+    }
+
+    private static double overlapArea(double[] a, double[] b) {
+        double[] overlap = new double[6];
+        for (int axis = 0; axis < 3; axis++) {
+            overlap[axis] = Math.max(a[axis], b[axis]);
+            overlap[3 + axis] = Math.min(a[3 + axis], b[3 + axis]);
+            if (overlap[axis] > overlap[3 + axis]) return 0;
+        }
+        return surfaceArea(overlap, 0);
+    }
+
+    /**
+     * Collects statistics of a built tree.
+     *
+     * @param root           the root node (may be {@code null})
+     * @param unbounded      amount of unbounded geometries outside the tree
+     * @param buildTimeNanos build time in nanoseconds
+     * @return the statistics
+     */
+    static Statistics statistics(Node root, int unbounded, long buildTimeNanos) {
+        if (root == null)
+            return new Statistics(0, unbounded, 0, 0, 0, 0, buildTimeNanos);
+        int[] counters = new int[3]; // nodes, leaves, max depth
+        double rootArea = surfaceArea(root.bounds, 0);
+        double cost = collect(root, 0, rootArea, counters);
+        return new Statistics(root.count, unbounded, counters[0], counters[1], counters[2], cost, buildTimeNanos);
+    }
+
+    private static double collect(Node node, int depth, double rootArea, int[] counters) {
+        counters[0]++;
+        double relativeArea = rootArea > 0 ? surfaceArea(node.bounds, 0) / rootArea : 1;
+        if (node.isLeaf()) {
+            counters[1]++;
+            counters[2] = Math.max(counters[2], depth);
+            return relativeArea * node.count * INTERSECTION_COST;
+        }
+        return relativeArea * TRAVERSAL_COST
+                + collect(node.left, depth + 1, rootArea, counters)
+                + collect(node.right, depth + 1, rootArea, counters);
+    }
+
+    private int binIndex(double centroid, double min, double scale) {
+        int b = (int) ((centroid - min) * scale);
+        return b < 0 ? 0 : Math.min(b, binCount - 1);
+    }
+
+    private double[] rangeBounds(double[] boxes, int[] order, int start, int end) {
+        if (parallel && end - start >= PARALLEL_THRESHOLD) {
+            int mid = (start + end) >>> 1;
+            ForkJoinTask<double[]> left = ForkJoinTask.adapt(() -> rangeBounds(boxes, order, start, mid)).fork();
+            double[] bounds = rangeBounds(boxes, order, mid, end);
+            growBounds(bounds, 0, left.join(), 0);
+            return bounds;
+        }
+        double[] bounds = emptyBounds(new double[6], 0);
+        for (int i = start; i < end; i++)
+            growBounds(bounds, 0, boxes, 6 * order[i]);
+        return bounds;
+    }
+
+    private double[] centroidBounds(double[] centroids, int[] order, int start, int end) {
+        if (parallel && end - start >= PARALLEL_THRESHOLD) {
+            int mid = (start + end) >>> 1;
+            ForkJoinTask<double[]> left = ForkJoinTask.adapt(() -> centroidBounds(centroids, order, start, mid)).fork();
+            double[] bounds = centroidBounds(centroids, order, mid, end);
+            growBounds(bounds, 0, left.join(), 0);
+            return bounds;
+        }
+        double[] bounds = emptyBounds(new double[6], 0);
+        for (int i = start; i < end; i++) {
+            int p = order[i];
+            for (int axis = 0; axis < 3; axis++) {
+                double c = centroids[3 * p + axis];
+                if (c < bounds[axis]) bounds[axis] = c;
+                if (c > bounds[3 + axis]) bounds[3 + axis] = c;
+            }
+        }
+        return bounds;
+    }
+
+    static double[] emptyBounds(double[] bounds, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = Double.POSITIVE_INFINITY;
+            bounds[offset + 3 + axis] = Double.NEGATIVE_INFINITY;
+        }
+        return bounds;
+    }
+
+    static void growBounds(double[] bounds, int offset, double[] box, int boxOffset) {
+        for (int axis = 0; axis < 3; axis++) {
+            if (box[boxOffset + axis] < bounds[offset + axis])
+                bounds[offset + axis] = box[boxOffset + axis];
+            if (box[boxOffset + 3 + axis] > bounds[offset + 3 + axis])
+                bounds[offset + 3 + axis] = box[boxOffset + 3 + axis];
+        }
+    }
+
+    static double surfaceArea(double[] bounds, int offset) {
+        double dx = bounds[offset + 3] - bounds[offset];
+        double dy = bounds[offset + 4] - bounds[offset + 1];
+        double dz = bounds[offset + 5] - bounds[offset + 2];
+        return 2 * (dx * dy + dx * dz + dy * dz);
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+}
@@ -0,0 +1,165 @@
+package geometries;
+
+import primitives.AABB;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * On-disk cache of compiled hierarchies ({@link LinearBVH}), so a static scene rendered
+ * repeatedly (with other cameras or lighting) does not rebuild its BVH on every run.
+ * <p>
+ * A hierarchy is stored in a file named by a SHA-256 hash of everything its construction depends on:
+ * the builder settings and, for every bounded primitive in order, its type and bounding box.
+ * Materials, emission and lights do not affect the tree, so changing them keeps the cache valid.
+ * The file holds the node arrays and the primitive of every leaf reference, and is read through a
+ * memory-mapped buffer.
+ * A missing or corrupt file is a cache miss, and a file that cannot be written is only logged -
+ * the hierarchy is then rebuilt on the next run.
+ * <p>
+ * Hierarchies built with spatial splits are not cached: their bounds depend on the clipped
+ * primitive shapes, which the key does not cover.
+ */
+public class BVHCache {
+    /** File header magic, "BVHC" */
+    private static final int MAGIC = 0x42564843;
+    /** File format version, also hashed into the key */
+    private static final int VERSION = 2;
+    /** Header size: magic, version, reference count and node count */
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    /** Cache file extension */
+    private static final String EXTENSION = ".bvh";
+
+    /** Logger of the cache write failures */
+    private static final Logger LOGGER = Logger.getLogger(BVHCache.class.getName());
+
+    /** The cache directory */
+    private final Path directory;
+
+    /**
+     * Constructs a cache in the given directory, which is created on the first store.
+     *
+     * @param directory the cache directory
+     */
+    public BVHCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Computes the cache key of a hierarchy over the given primitives.
+     *
+     * @param primitives the bounded primitives, in the order given to the builder
+     * @param builder    the builder settings
+     * @return the key - a hexadecimal hash
+     */
+    String key(Intersectable[] primitives, BVHBuilder builder) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(6 * Double.BYTES);
+        buffer.putInt(VERSION).putInt(builder.getBinCount()).putInt(builder.getMaxLeafSize()).putInt(primitives.length)
+                .putDouble(builder.getSpatialSplitBudget());
+        digest.update(buffer.flip());
+        for (Intersectable primitive : primitives) {
+            digest.update(primitive.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            AABB box = (AABB) primitive.getBoundingBox();
+            buffer.clear();
+            buffer.putDouble(box.getX_min()).putDouble(box.getY_min()).putDouble(box.getZ_min())
+                    .putDouble(box.getX_max()).putDouble(box.getY_max()).putDouble(box.getZ_max());
+            digest.update(buffer.flip());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Loads a cached hierarchy.
+     *
+     * @param key        the cache key of the primitives
+     * @param primitives the bounded primitives, in the order given to the builder
+     * @return the hierarchy, or {@code null} if it is not cached (or the cache file is corrupt)
+     */
+    LinearBVH load(String key, Intersectable[] primitives) {
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+            int n = buffer.getInt();
+            int nodeCount = buffer.getInt();
+            if (n < primitives.length || nodeCount <= 0
+                    || size != HEADER_SIZE + 6L * nodeCount * Double.BYTES + (2L * nodeCount + n) * Integer.BYTES)
+                return null;
+
+            double[] bounds = new double[6 * nodeCount];
+            buffer.asDoubleBuffer().get(bounds);
+            buffer.position(buffer.position() + bounds.length * Double.BYTES);
+            int[] nodes = new int[2 * nodeCount];
+            int[] order = new int[n];
+            buffer.asIntBuffer().get(nodes).get(order);
+
+            Intersectable[] references = new Intersectable[n];
+            for (int i = 0; i < n; i++) {
+                if (order[i] < 0 || order[i] >= primitives.length) return null;
+                references[i] = primitives[order[i]];
+            }
+            return new LinearBVH(bounds, nodes, references);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a hierarchy in the cache, replacing any stored one with the same key.
+     * An I/O error (e.g. a read-only or full cache directory) is logged, and the hierarchy is not cached.
+     *
+     * @param key   the cache key of the primitives
+     * @param bvh   the hierarchy
+     * @param order the original index of the primitive of every reference of the hierarchy, in leaf order
+     */
+    void store(String key, LinearBVH bvh, int[] order) {
+        double[] bounds = bvh.getBounds();
+        int[] nodes = bvh.getNodes();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bounds.length * Double.BYTES
+                + (nodes.length + order.length) * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(order.length).putInt(nodes.length / 2);
+        buffer.asDoubleBuffer().put(bounds);
+        buffer.position(buffer.position() + bounds.length * Double.BYTES);
+        buffer.asIntBuffer().put(nodes).put(order);
+        buffer.rewind();
+
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            // written aside and moved into place, so a concurrent reader never sees a partial file
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            Files.move(temp, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot write BVH cache in " + directory + " - continuing without caching", e);
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
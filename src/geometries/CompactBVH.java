@@ -0,0 +1,400 @@
+package geometries;
+
+import primitives.AABB;
+import primitives.CBR;
+import primitives.Double3;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled bounding volume hierarchy with a compact node layout, for scenes bounded by memory.
+ * <p>
+ * The binary tree of {@link BVHBuilder} is collapsed into 4-wide nodes: the interior child with
+ * the largest surface area is repeatedly replaced by its two children. Every node stores a
+ * quantization frame - an origin and a scale per axis, as floats - and the bounds of its children
+ * as unsigned 8-bit offsets in that frame, rounded outwards so the boxes stay conservative.
+ * A node takes 68 bytes for up to four children, several times less than the binary
+ * {@link LinearBVH} layout of 56 bytes per node with double bounds.
+ * <p>
+ * The node at index {@code i} has its frame at {@code frames[6i..6i+5]} (origin x, y, z followed
+ * by scale x, y, z), and child slots {@code 4i..4i+3}: quantized bounds at {@code childBounds[6s..6s+5]},
+ * and in {@code children[s]} the index of an interior child, the bitwise complement of the first
+ * primitive of a leaf (whose size minus one is in {@code leafSizes[s]}), or {@link #EMPTY}.
+ * <p>
+ * Like {@link LinearBVH}, primitives referenced by more than one leaf (spatial splits) are mailboxed.
+ */
+public class CompactBVH extends Intersectable {
+    /** Amount of child slots of a node */
+    static final int WIDTH = 4;
+    /** Largest quantized coordinate */
+    private static final int LEVELS = 255;
+    /** Largest leaf size that fits in a leaf size byte */
+    private static final int MAX_LEAF_SIZE = 256;
+    /** Marks an unused child slot */
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    /** Quantization frame of every node, 6 values per node */
+    private final float[] frames;
+    /** Quantized child bounds, 6 unsigned bytes per child slot */
+    private final byte[] childBounds;
+    /** Child of every slot: interior node index, complement of a leaf's primitive offset, or {@link #EMPTY} */
+    private final int[] children;
+    /** Leaf size minus one of every leaf slot, unsigned */
+    private final byte[] leafSizes;
+    /** The primitive references, ordered so that the references of each leaf are contiguous */
+    private final Intersectable[] primitives;
+    /** Size of the traversal stack */
+    private final int stackSize;
+    /** Distinct primitive id of every reference, {@code null} if no primitive is referenced twice */
+    private final int[] primitiveIds;
+    /** Amount of distinct primitives */
+    private final int uniqueCount;
+    /** Per-thread mailboxes of the distinct primitives, {@code null} if no primitive is referenced twice */
+    private final ThreadLocal<Mailbox> mailboxes;
+    /** Per-thread traversal stacks */
+    private final ThreadLocal<TraversalStack> stacks;
+
+    /**
+     * Compiles the hierarchy built by {@link BVHBuilder}.
+     *
+     * @param root       root of the built hierarchy
+     * @param primitives the primitive references as ordered by the builder
+     * @throws IllegalArgumentException if a leaf holds more than 256 primitives
+     */
+    CompactBVH(BVHBuilder.Node root, Intersectable[] primitives) {
+        int nodeCount = countNodes(root);
+        this.frames = new float[6 * nodeCount];
+        this.childBounds = new byte[6 * WIDTH * nodeCount];
+        this.children = new int[WIDTH * nodeCount];
+        this.leafSizes = new byte[WIDTH * nodeCount];
+        this.primitives = primitives;
+        this.stackSize = (WIDTH - 1) * flatten(root, 0, 0)[1] + WIDTH;
+        this.primitiveIds = LinearBVH.primitiveIds(primitives);
+        this.uniqueCount = primitiveIds == null ? primitives.length : LinearBVH.countUnique(primitiveIds);
+        this.mailboxes = primitiveIds == null ? null : ThreadLocal.withInitial(() -> new Mailbox(uniqueCount));
+        this.stacks = ThreadLocal.withInitial(() -> new TraversalStack(stackSize, WIDTH));
+        setBoundingBox(new AABB(root.bounds[0], root.bounds[1], root.bounds[2],
+                root.bounds[3], root.bounds[4], root.bounds[5]));
+    }
+
+    /**
+     * Returns the amount of (4-wide) nodes in the compiled hierarchy.
+     *
+     * @return amount of nodes
+     */
+    public int getNodeCount() {
+        return children.length / WIDTH;
+    }
+
+    /**
+     * Returns the amount of memory taken by the nodes.
+     *
+     * @return size of the node arrays in bytes
+     */
+    public long getNodeBytes() {
+        return (long) frames.length * Float.BYTES + childBounds.length + (long) children.length * Integer.BYTES
+                + leafSizes.length;
+    }
+
+    /**
+     * Returns the amount of distinct primitives in the compiled hierarchy.
+     *
+     * @return amount of primitives
+     */
+    public int getPrimitiveCount() {
+        return uniqueCount;
+    }
+
+    /**
+     * Returns the distinct primitives of the hierarchy, in leaf order.
+     *
+     * @return the primitives array (not a copy, unless primitives are referenced twice)
+     */
+    Intersectable[] getPrimitives() {
+        if (primitiveIds == null) return primitives;
+        Intersectable[] unique = new Intersectable[uniqueCount];
+        for (int i = 0; i < primitives.length; i++)
+            unique[primitiveIds[i]] = primitives[i];
+        return unique;
+    }
+
+    /**
+     * Chooses the children of the wide node collapsed from a binary node.
+     *
+     * @param node the binary node
+     * @return up to {@link #WIDTH} descendants covering the node
+     */
+    private static List<BVHBuilder.Node> collapse(BVHBuilder.Node node) {
+        List<BVHBuilder.Node> slots = new ArrayList<>(WIDTH);
+        if (node.isLeaf()) {
+            slots.add(node);
+            return slots;
+        }
+        slots.add(node.left);
+        slots.add(node.right);
+        while (slots.size() < WIDTH) {
+            int widest = -1;
+            double widestArea = -1;
+            for (int i = 0; i < slots.size(); i++) {
+                BVHBuilder.Node slot = slots.get(i);
+                double area = BVHBuilder.surfaceArea(slot.bounds, 0);
+                if (!slot.isLeaf() && area > widestArea) {
+                    widest = i;
+                    widestArea = area;
+                }
+            }
+            if (widest == -1) break;
+            BVHBuilder.Node opened = slots.remove(widest);
+            slots.add(widest, opened.right);
+            slots.add(widest, opened.left);
+        }
+        return slots;
+    }
+
+    private static int countNodes(BVHBuilder.Node node) {
+        int count = 1;
+        for (BVHBuilder.Node slot : collapse(node))
+            if (!slot.isLeaf()) count += countNodes(slot);
+        return count;
+    }
+
+    /**
+     * Writes the wide node collapsed from a binary node, and its subtree in depth-first order.
+     *
+     * @param node  the binary node
+     * @param index the index of the wide node
+     * @param depth the depth of the wide node
+     * @return the next free index and the depth of the subtree
+     */
+    private int[] flatten(BVHBuilder.Node node, int index, int depth) {
+        double[] bounds = node.bounds;
+        int f = 6 * index;
+        for (int axis = 0; axis < 3; axis++) {
+            float origin = floatDown(bounds[axis]);
+            float scale = floatUp((bounds[3 + axis] - origin) / LEVELS);
+            while (origin + LEVELS * (double) scale < bounds[3 + axis])
+                scale = Math.nextUp(scale);
+            frames[f + axis] = origin;
+            frames[f + 3 + axis] = scale;
+        }
+
+        List<BVHBuilder.Node> slots = collapse(node);
+        int next = index + 1;
+        int maxDepth = depth;
+        for (int s = 0; s < WIDTH; s++) {
+            int slot = WIDTH * index + s;
+            if (s >= slots.size()) {
+                children[slot] = EMPTY;
+                continue;
+            }
+            BVHBuilder.Node child = slots.get(s);
+            quantize(f, child.bounds, 6 * slot);
+            if (child.isLeaf()) {
+                if (child.count > MAX_LEAF_SIZE)
+                    throw new IllegalArgumentException("Compact BVH leaves hold at most " + MAX_LEAF_SIZE + " primitives");
+                children[slot] = ~child.start;
+                leafSizes[slot] = (byte) (child.count - 1);
+            } else {
+                children[slot] = next;
+                int[] subtree = flatten(child, next, depth + 1);
+                next = subtree[0];
+                maxDepth = Math.max(maxDepth, subtree[1]);
+            }
+        }
+        return new int[]{next, maxDepth};
+    }
+
+    /**
+     * Quantizes child bounds in the frame of their node, rounding outwards.
+     *
+     * @param frame  offset of the node frame
+     * @param bounds the child bounds
+     * @param target offset of the quantized bounds
+     */
+    private void quantize(int frame, double[] bounds, int target) {
+        for (int axis = 0; axis < 3; axis++) {
+            double origin = frames[frame + axis];
+            double scale = frames[frame + 3 + axis];
+            int low = 0;
+            int high = LEVELS;
+            if (scale > 0) {
+                low = (int) Math.max(0, Math.min(LEVELS, Math.floor((bounds[axis] - origin) / scale)));
+                while (low > 0 && origin + low * scale > bounds[axis]) low--;
+                high = (int) Math.max(0, Math.min(LEVELS, Math.ceil((bounds[3 + axis] - origin) / scale)));
+                while (high < LEVELS && origin + high * scale < bounds[3 + axis]) high++;
+            }
+            childBounds[target + axis] = (byte) low;
+            childBounds[target + 3 + axis] = (byte) high;
+        }
+    }
+
+    private static float floatDown(double value) {
+        float f = (float) value;
+        return f > value ? Math.nextDown(f) : f;
+    }
+
+    private static float floatUp(double value) {
+        float f = (float) value;
+        return f < value ? Math.nextUp(f) : f;
+    }
+
+    @Override
+    protected CBR createBoundingBoxHelper() {
+        return getBoundingBox();
+    }
+
+    /**
+     * Box test of a child slot, dequantizing its bounds.
+     *
+     * @return the entry distance, or {@link Double#POSITIVE_INFINITY} if missed
+     */
+    private double entryDistance(int node, int slot, double ox, double oy, double oz,
+                                 double ix, double iy, double iz, double maxDistance) {
+        int f = 6 * node;
+        int b = 6 * slot;
+        double originX = frames[f], originY = frames[f + 1], originZ = frames[f + 2];
+        double scaleX = frames[f + 3], scaleY = frames[f + 4], scaleZ = frames[f + 5];
+        return AABB.entryDistance(
+                originX + (childBounds[b] & 0xFF) * scaleX,
+                originY + (childBounds[b + 1] & 0xFF) * scaleY,
+                originZ + (childBounds[b + 2] & 0xFF) * scaleZ,
+                originX + (childBounds[b + 3] & 0xFF) * scaleX,
+                originY + (childBounds[b + 4] & 0xFF) * scaleY,
+                originZ + (childBounds[b + 5] & 0xFF) * scaleZ,
+                ox, oy, oz, ix, iy, iz, maxDistance);
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        List<Intersection> intersections = null;
+        Mailbox mailbox = mailboxes == null ? null : mailboxes.get();
+        int id = mailbox == null ? 0 : mailbox.next();
+        TraversalStack traversal = stacks.get();
+        int[] stack = traversal.nodes;
+        int top = 0;
+        stack[top++] = 0; // the root box is tested by the caller
+        while (top > 0) {
+            int node = stack[--top];
+            for (int slot = WIDTH * node; slot < WIDTH * node + WIDTH && children[slot] != EMPTY; slot++) {
+                if (entryDistance(node, slot, ox, oy, oz, ix, iy, iz, maxDistance) == Double.POSITIVE_INFINITY)
+                    continue;
+                int child = children[slot];
+                if (child >= 0) {
+                    stack[top++] = child;
+                    continue;
+                }
+                int offset = ~child;
+                int end = offset + (leafSizes[slot] & 0xFF) + 1;
+                for (int i = offset; i < end; i++) {
+                    if (mailbox != null && !mailbox.mark(primitiveIds[i], id)) continue;
+                    List<Intersection> hits = primitives[i].calculateIntersections(ray, maxDistance);
+                    if (hits != null) {
+                        if (intersections == null) intersections = new ArrayList<>();
+                        intersections.addAll(hits);
+                    }
+                }
+            }
+        }
+        return intersections;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Double3 origin = ray.getHead().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        Mailbox mailbox = mailboxes == null ? null : mailboxes.get();
+        int id = mailbox == null ? 0 : mailbox.next();
+        TraversalStack traversal = stacks.get();
+        int[] stack = traversal.nodes;
+        int top = 0;
+        stack[top++] = 0; // the root box is tested by the caller
+        while (top > 0) {
+            int node = stack[--top];
+            for (int slot = WIDTH * node; slot < WIDTH * node + WIDTH && children[slot] != EMPTY; slot++) {
+                if (entryDistance(node, slot, ox, oy, oz, ix, iy, iz, maxDistance) == Double.POSITIVE_INFINITY)
+                    continue;
+                int child = children[slot];
+                if (child >= 0) {
+                    stack[top++] = child;
+                    continue;
+                }
+                int offset = ~child;
+                int end = offset + (leafSizes[slot] & 0xFF) + 1;
+                for (int i = offset; i < end; i++) {
+                    if (mailbox != null && !mailbox.mark(primitiveIds[i], id)) continue;
+                    ktr = primitives[i].calculateTransparency(ray, maxDistance, ktr, minK);
+                    if (ktr.lowerThan(minK)) return ktr;
+                }
+            }
+        }
+        return ktr;
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double maxDistance = hit.distance;
+        Double3 origin = ray.getHead().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        boolean found = false;
+        TraversalStack traversal = stacks.get();
+        int[] stack = traversal.nodes;
+        double[] stackEntries = traversal.entries;
+        int[] hitSlots = traversal.hitSlots;
+        double[] hitEntries = traversal.hitEntries;
+        int top = 0;
+        int node = 0; // the root box is tested by the caller
+        while (true) {
+            // the children hit by the ray, ordered front to back
+            int hits = 0;
+            for (int slot = WIDTH * node; slot < WIDTH * node + WIDTH && children[slot] != EMPTY; slot++) {
+                double entry = entryDistance(node, slot, ox, oy, oz, ix, iy, iz, maxDistance);
+                if (entry == Double.POSITIVE_INFINITY) continue;
+                int h = hits++;
+                while (h > 0 && hitEntries[h - 1] > entry) {
+                    hitSlots[h] = hitSlots[h - 1];
+                    hitEntries[h] = hitEntries[h - 1];
+                    h--;
+                }
+                hitSlots[h] = slot;
+                hitEntries[h] = entry;
+            }
+
+            // leaves first, shrinking the distance, then the interior children pushed far to near
+            for (int h = 0; h < hits; h++) {
+                int child = children[hitSlots[h]];
+                if (child >= 0 || hitEntries[h] > maxDistance) continue;
+                int offset = ~child;
+                int end = offset + (leafSizes[hitSlots[h]] & 0xFF) + 1;
+                for (int i = offset; i < end; i++)
+                    if (primitives[i].calculateClosestHit(ray, hit)) {
+                        found = true;
+                        maxDistance = hit.distance;
+                    }
+            }
+            for (int h = hits - 1; h >= 0; h--) {
+                int child = children[hitSlots[h]];
+                if (child >= 0 && hitEntries[h] <= maxDistance) {
+                    stack[top] = child;
+                    stackEntries[top++] = hitEntries[h];
+                }
+            }
+
+            // pop the next node that may still hold a closer hit
+            do {
+                if (top == 0) return found;
+                --top;
+            } while (stackEntries[top] > maxDistance);
+            node = stack[top];
+        }
+    }
+}
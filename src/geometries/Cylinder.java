@@ -1,14 +1,11 @@
 package geometries;
 
 import primitives.AABB;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.Collectors;
-
 import static primitives.Util.*;
 
 /**
@@ -18,6 +15,9 @@ import static primitives.Util.*;
  * the cylinder is bounded by two circular caps (top and bottom).
  */
 public class Cylinder extends Tube {
+    /** Distance under which a cap intersection is the same rim point as a surface intersection */
+    private static final double RIM_TOLERANCE = 1e-10;
+
     private final double height;
 
     /**
@@ -56,96 +56,41 @@ public class Cylinder extends Tube {
     }
 
     /**
-     * Helper method to find the intersection between a ray and one circular cap of the cylinder.
-     *
-     * @param ray    The ray to intersect with the cap.
-     * @param center The center of the circular cap (bottom or top).
-     * @param normal The normal vector of the cap (aligned with cylinder axis).
-     * @return The intersection point if it exists and lies within the cap’s radius, otherwise {@code null}.
+     * Intersects the surface within the height, and the caps as disks, in the axis frame.
+     * A point on the rim, found both on the surface and on a cap, counts once.
      */
-    private Point intersectBase(Ray ray, Point center, Vector normal, double maxDistance) {
-        // Represent the cap as a plane
-        Plane basePlane = new Plane(center, normal);
-
-        // Find the intersection point with the plane
-        List<Point> intersections = basePlane.findIntersections(ray);
-
-        // If no intersection or the point is outside the cap's radius, return null
-        if (intersections == null)
-            return null;
-
-        Point intersection = intersections.getFirst();
-        return alignZero(intersection.distance(center) - radius) <= 0 &&
-                alignZero(ray.getHead().distance(intersection) - maxDistance) <= 0
-                ? intersection : null;
-    }
-
-    /**
-     * Helper method to check if a list contains a point within a small tolerance.
-     */
-    private boolean containsPoint(List<Point> points, Point p) {
-        final double EPS = 1e-10;
-        for (Point point : points) {
-            if (point.distance(p) < EPS) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     @Override
-    public List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        List<Point> intersections = new LinkedList<>();
-
-        // Intersections with the infinite tube surface
-        List<Intersection> tube_intersections = super.calculateIntersectionsHelper(ray, maxDistance);
-        List<Point> tubeIntersections = null;
-        if (tube_intersections != null)
-            tubeIntersections = tube_intersections.stream().map(intersection -> intersection.point).toList();
-
-        if (tubeIntersections != null) {
-            Vector axisDir = axis.getDirection();
-            Point baseCenter = axis.getHead();
-
-            for (Point pt : tubeIntersections) {
-                Vector baseToPoint = pt.subtract(baseCenter);
-                double projection = alignZero(axisDir.dotProduct(baseToPoint));
-
-                // Keep only points within the cylinder's finite height (excluding caps)
-                if (projection >= 0 && projection <= height)
-                    intersections.add(pt);
-            }
+    protected int intersect(Ray ray, double maxDistance, double[] t) {
+        Double3 o = ray.getHead().get_xyz();
+        Double3 d = ray.getDirection().get_xyz();
+        double x = o.d1() - px, y = o.d2() - py, z = o.d3() - pz;
+        double ou = x * ux + y * uy + z * uz, ov = x * vx + y * vy + z * vz, ow = x * wx + y * wy + z * wz;
+        double du = d.d1() * ux + d.d2() * uy + d.d3() * uz, dv = d.d1() * vx + d.d2() * vy + d.d3() * vz;
+        double dw = d.d1() * wx + d.d2() * wy + d.d3() * wz;
+
+        int n = 0;
+        for (int i = 0, surface = intersectSurface(ou, ov, du, dv, maxDistance, t); i < surface; i++) {
+            double w = alignZero(ow + t[i] * dw);
+            if (w >= 0 && alignZero(w - height) <= 0)
+                t[n++] = t[i];
         }
 
-        // Intersections with the bottom cap
-        Point bottomCenter = axis.getHead();
-        Vector axisDir = axis.getDirection();
-        Point bottomIntersection = intersectBase(ray, bottomCenter, axisDir.scale(-1), maxDistance); // bottom cap normal points opposite to axis
-
-        if (bottomIntersection != null && !containsPoint(intersections, bottomIntersection))
-            intersections.add(bottomIntersection);
-
-        // Intersections with the top cap
-        Point topCenter = axis.getPoint(height);
-        Point topIntersection = intersectBase(ray, topCenter, axisDir, maxDistance);
-
-        if (topIntersection != null && !containsPoint(intersections, topIntersection))
-            intersections.add(topIntersection);
-
-        // Return null if no intersections found
-        if (intersections.isEmpty())
-            return null;
-
-        // Ensure correct order: closest point to ray origin first
-        if (intersections.size() == 2) {
-            Point p0 = ray.getHead();
-            if (intersections.get(0).distance(p0) > intersections.get(1).distance(p0)) {
-                Point temp = intersections.get(0);
-                intersections.set(0, intersections.get(1));
-                intersections.set(1, temp);
+        if (!isZero(dw))
+            for (int cap = 0; cap < 2; cap++) {
+                double capHeight = cap == 0 ? 0 : height;
+                double tc = alignZero((capHeight - ow) / dw);
+                if (tc <= 0 || alignZero(tc - maxDistance) > 0) continue;
+                double u = ou + tc * du, v = ov + tc * dv;
+                if (alignZero(u * u + v * v - radius * radius) > 0) continue;
+                // insert in order, unless already found on the rim
+                int i = 0;
+                while (i < n && t[i] < tc) i++;
+                if ((i < n && t[i] - tc < RIM_TOLERANCE) || (i > 0 && tc - t[i - 1] < RIM_TOLERANCE)) continue;
+                System.arraycopy(t, i, t, i + 1, n - i);
+                t[i] = tc;
+                n++;
             }
-        }
-        return intersections.stream().map(i -> new Intersection(this, i)).collect(Collectors.toList());
+        return n;
     }
 
     @Override
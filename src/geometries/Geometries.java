@@ -1,6 +1,8 @@
 package geometries;
 
+import primitives.AABB;
 import primitives.CBR;
+import primitives.Double3;
 import primitives.Ray;
 
 import java.util.*;
@@ -13,6 +15,39 @@ public class Geometries extends Intersectable {
 
     private final List<Intersectable> geometries = new LinkedList<>();
 
+    /**
+     * Up to this amount of children, the closest-hit search visits them ordered front to back
+     */
+    private static final int SORTED_CHILDREN_LIMIT = 8;
+
+    /**
+     * Bounding box of the bounded children only. When the collection also holds unbounded
+     * geometries (e.g. a ground plane) it has no bounding box of its own, and this box
+     * still lets a ray skip all the bounded children at once.
+     */
+    private CBR boundedBox;
+
+    /**
+     * Statistics of the last BVH built over this collection
+     */
+    private BVHBuilder.Statistics bvhStatistics;
+
+    /**
+     * The children to visit of the running closest-hit searches of each thread
+     */
+    private static final ThreadLocal<ChildStack> CHILD_STACKS = ThreadLocal.withInitial(ChildStack::new);
+
+    /**
+     * Stack of the children to visit, and their entry distances, of the running closest-hit searches
+     * of a thread. A search takes the range above the ranges of the searches it is nested in
+     * (a collection held by a collection), so the searches do not allocate.
+     */
+    private static final class ChildStack {
+        private Intersectable[] children = new Intersectable[16];
+        private double[] entries = new double[16];
+        private int top;
+    }
+
     /**
      * Returns the length of the geometries' list.
      *
@@ -40,21 +75,32 @@ public class Geometries extends Intersectable {
     /**
      * Adds one or more geometries to the collection.
      * <p>
-     * For each added geometry:
-     * <ul>
-     *     <li>If it does not yet have a bounding box, one is created by calling {@code createBoundingBox()}.</li>
-     *     <li>If the geometry has a valid bounding box, it is used to update the overall bounding box
-     *         of this {@code Geometries} object using the {@code surround()} method.</li>
-     *     <li>The geometry is then added to the internal list.</li>
-     * </ul>
-     * <p>
-     * This method ensures that the {@code Geometries} object's bounding box is always up-to-date
-     * with respect to its contents.
+     * The bounding box of the collection and the box of its bounded geometries no longer cover
+     * the contents, so both are cleared: until the next {@code createCBR()} the collection has no
+     * bounding box, and every ray tests all its geometries. The added geometries' own boxes are
+     * not created here either - {@code createCBR()} creates them too.
      *
      * @param geometries One or more {@link Intersectable} geometries to add
      */
     public void add(Intersectable... geometries) {
         Collections.addAll(this.geometries, geometries);
+        // the boxes no longer cover the contents - they are recreated by the next createCBR()
+        setBoundingBox(null);
+        boundedBox = null;
+    }
+
+    /**
+     * Checks whether the ray can skip all the bounded children: the collection holds unbounded
+     * geometries too (so the caller could not cull it by its own box), and the ray misses the
+     * box of the bounded ones.
+     *
+     * @param ray         The ray to test
+     * @param maxDistance The maximum distance from the ray origin to consider
+     * @return true if only the unbounded children need to be tested
+     */
+    private boolean missesBounded(Ray ray, double maxDistance) {
+        return getBoundingBox() == null && boundedBox != null
+                && boundedBox.entryDistance(ray, maxDistance) == Double.POSITIVE_INFINITY;
     }
 
 
@@ -69,8 +115,11 @@ public class Geometries extends Intersectable {
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
         List<Intersection> intersections = new ArrayList<>();
+        boolean unboundedOnly = missesBounded(ray, maxDistance);
 
         for (Intersectable geometry : geometries) {
+            if (unboundedOnly && geometry.getBoundingBox() != null)
+                continue;
             List<Intersection> geoIntersections = geometry.calculateIntersections(ray, maxDistance);
             if (geoIntersections != null) {
                 intersections.addAll(geoIntersections);
@@ -80,14 +129,166 @@ public class Geometries extends Intersectable {
         return intersections.isEmpty() ? null : intersections;
     }
 
+    /**
+     * Finds the closest intersection between the ray and the geometries.
+     * The bounding box of every child is tested before descending into it, the children are
+     * visited front to back by their box entry distance, and the search distance shrinks
+     * to the closest hit found so far, so farther children are skipped altogether.
+     * Unbounded children are always tested (first, at entry distance 0), and share the
+     * shrinking distance with the bounded ones.
+     *
+     * @param ray The ray to test for intersections
+     * @param hit The closest hit so far, whose distance limits the search
+     * @return true if a closer hit was found
+     */
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double maxDistance = hit.distance;
+        ChildStack stack = CHILD_STACKS.get();
+        int base = stack.top;
+        int size = base + geometries.size();
+        if (size > stack.children.length) {
+            stack.children = Arrays.copyOf(stack.children, Math.max(size, 2 * stack.children.length));
+            stack.entries = Arrays.copyOf(stack.entries, stack.children.length);
+        }
+        Intersectable[] children = stack.children;
+        double[] entries = stack.entries;
+        stack.top = size;
+        try {
+            return closestChildHit(ray, hit, children, entries, base, missesBounded(ray, maxDistance));
+        } finally {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * Searches the children for the closest hit, in the range of the scratch arrays taken by the search.
+     *
+     * @param ray           The ray to test for intersections
+     * @param hit           The closest hit so far, whose distance limits the search
+     * @param children      scratch array of the children to visit
+     * @param entries       scratch array of the entry distances of the children to visit
+     * @param base          start of the range of the search in the scratch arrays
+     * @param unboundedOnly whether only the unbounded children need to be tested
+     * @return true if a closer hit was found
+     */
+    private boolean closestChildHit(Ray ray, Hit hit, Intersectable[] children, double[] entries, int base,
+                                    boolean unboundedOnly) {
+        double maxDistance = hit.distance;
+        int end = base;
+
+        for (Intersectable geometry : geometries) {
+            CBR box = geometry.getBoundingBox();
+            if (unboundedOnly && box != null)
+                continue;
+            double entry = box == null ? 0 : box.entryDistance(ray, maxDistance);
+            if (entry == Double.POSITIVE_INFINITY)
+                continue;
+            children[end] = geometry;
+            entries[end++] = entry;
+        }
+
+        // BVH nodes hold just a few children - order them front to back.
+        // Large flat lists are scanned as is, relying on the shrinking distance for culling.
+        boolean sorted = end - base <= SORTED_CHILDREN_LIMIT;
+        if (sorted)
+            sortByEntry(children, entries, base, end);
+
+        boolean found = false;
+        for (int i = base; i < end; i++) {
+            if (entries[i] > hit.distance) {
+                if (sorted) break;
+                continue;
+            }
+            if (children[i].calculateClosestHitHelper(ray, hit))
+                found = true;
+        }
+        return found;
+    }
+
+    /**
+     * Passes the packet to the children - the unbounded ones first, as in the single ray search.
+     * The bounded children are skipped at once for the rays missing their common box.
+     *
+     * @param rays the rays of the packet
+     * @param hits the closest hit of each ray so far, updated
+     * @param mask the active rays
+     */
+    @Override
+    protected void calculateClosestHitsHelper(Ray[] rays, Hit[] hits, long mask) {
+        long boundedMask = mask;
+        if (getBoundingBox() == null && boundedBox != null) {
+            boundedMask = 0;
+            for (long m = mask; m != 0; m &= m - 1) {
+                int i = Long.numberOfTrailingZeros(m);
+                if (boundedBox.entryDistance(rays[i], hits[i].distance) != Double.POSITIVE_INFINITY)
+                    boundedMask |= 1L << i;
+            }
+        }
+        for (Intersectable geometry : geometries)
+            if (geometry.getBoundingBox() == null)
+                geometry.calculateClosestHitsHelper(rays, hits, mask);
+        if (boundedMask == 0) return;
+        for (Intersectable geometry : geometries)
+            if (geometry.getBoundingBox() != null)
+                geometry.calculateClosestHits(rays, hits, boundedMask);
+    }
+
+    /**
+     * Threads the transparency coefficient through the children, stopping once it falls below the cutoff.
+     *
+     * @param ray         The ray to test
+     * @param maxDistance The maximum distance from the ray origin to consider
+     * @param ktr         The transparency coefficient accumulated so far
+     * @param minK        The cutoff
+     * @return The updated transparency coefficient
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        boolean unboundedOnly = missesBounded(ray, maxDistance);
+        for (Intersectable geometry : geometries) {
+            if (unboundedOnly && geometry.getBoundingBox() != null)
+                continue;
+            ktr = geometry.calculateTransparency(ray, maxDistance, ktr, minK);
+            if (ktr.lowerThan(minK)) break;
+        }
+        return ktr;
+    }
+
+    /**
+     * Sorts a range of the children by their box entry distance (insertion sort).
+     *
+     * @param children the children to sort
+     * @param entries  the entry distances matching the children
+     * @param start    the start of the range
+     * @param end      the end of the range (exclusive)
+     */
+    private static void sortByEntry(Intersectable[] children, double[] entries, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            Intersectable child = children[i];
+            double entry = entries[i];
+            int j = i - 1;
+            while (j >= start && entries[j] > entry) {
+                children[j + 1] = children[j];
+                entries[j + 1] = entries[j];
+                j--;
+            }
+            children[j + 1] = child;
+            entries[j + 1] = entry;
+        }
+    }
+
     /**
      * Creates a bounding box that surrounds all geometries in the collection.
+     * The boxes of all the children are created, and the box of the bounded children is kept
+     * even when some children are unbounded, so they can still be culled together.
      *
-     * @return AABB that bounds all internal geometries, or null if empty
+     * @return AABB that bounds all internal geometries, or null if empty or if any geometry is unbounded
      */
     @Override
     protected CBR createBoundingBoxHelper() {
         CBR result = null;
+        boolean hasUnbounded = false;
 
         for (Intersectable geometry : geometries) {
             // Ensure the geometry has a bounding box and store it
@@ -95,13 +296,15 @@ public class Geometries extends Intersectable {
                     ? geometry.getBoundingBox()
                     : geometry.createCBR();
 
-            // If any geometry has no bounding box, return null
-            if (box == null) {
-                return null;
-            }
-            result = (result == null) ? box : result.surround(box);
+            if (box == null)
+                hasUnbounded = true;
+            else
+                result = (result == null) ? box : result.surround(box);
         }
 
+        boundedBox = result;
+        if (hasUnbounded)
+            return null;
         if (result != null) {
             setBoundingBox(result);
         }
@@ -109,146 +312,305 @@ public class Geometries extends Intersectable {
     }
 
     /**
-     * Recursively builds a BVH by splitting geometries along the longest axis.
-     * Splits the list in-place into two child nodes and replaces this node's geometries with them.
-     * Limited to a maximum recursion depth of 4.
+     * Builds a BVH over all the geometries in the collection with the default {@link BVHBuilder} settings.
+     *
+     * @return statistics of the built hierarchy
+     * @see #createBVH(BVHBuilder)
      */
-    public void createBVH() {
-        createBVH(5);
+    public BVHBuilder.Statistics createBVH() {
+        return createBVH(new BVHBuilder());
     }
 
     /**
-     * Recursively builds a BVH by splitting geometries along the longest axis.
-     * Splits the list in-place into two child nodes and replaces this node's geometries with them.
+     * Builds a BVH over all the geometries in the collection using the binned SAH builder.
+     * Nested collections are flattened first. The bounded geometries are organized in a tree of
+     * nested {@code Geometries} nodes, each with its bounding box, which replaces this collection's
+     * contents. Unbounded geometries (e.g. planes) cannot be placed in the tree and stay directly
+     * in this collection next to the tree root.
      *
-     * @param depth Current recursion depth
+     * @param builder the builder holding the construction settings
+     * @return statistics of the built hierarchy
      */
-    private void createBVH(int depth) {
-        System.out.println("Entering createBVH at depth " + depth + ", geometry count: " + geometries.size());
+    public BVHBuilder.Statistics createBVH(BVHBuilder builder) {
+        long startTime = System.nanoTime();
+
+        List<Intersectable> unbounded = new ArrayList<>();
+        Intersectable[] primitives = splitBounded(unbounded);
+        BVHBuilder.Node root = builder.buildTree(primitives);
 
-        if (geometries.size() <= 2 || depth >= 4) {
-            System.out.println("Base case hit at depth " + depth + ", stopping recursion.");
-            return;
+        geometries.clear();
+        setBoundingBox(null);
+        boundedBox = null;
+        if (root != null) {
+            if (root.isLeaf())
+                Collections.addAll(geometries, primitives);
+            else {
+                geometries.add(toGeometries(root.left, primitives));
+                geometries.add(toGeometries(root.right, primitives));
+            }
+            boundedBox = toAABB(root.bounds);
+            if (unbounded.isEmpty())
+                setBoundingBox(boundedBox);
         }
+        geometries.addAll(unbounded);
 
-        List<Intersectable> flattenedGeometries = new ArrayList<>();
-        flattenGeometries(geometries, flattenedGeometries);
-        System.out.println("Flattened geometries count: " + flattenedGeometries.size());
+        bvhStatistics = BVHBuilder.statistics(root, unbounded.size(), System.nanoTime() - startTime);
+        return bvhStatistics;
+    }
 
-        if (flattenedGeometries.size() <= 2) {
-            geometries.clear();
-            geometries.addAll(flattenedGeometries);
-            System.out.println("Too few geometries after flattening. Returning.");
-            return;
-        }
+    /**
+     * Compiles all the geometries in the collection into a {@link LinearBVH}
+     * with the default {@link BVHBuilder} settings.
+     *
+     * @return statistics of the compiled hierarchy
+     * @see #compileBVH(BVHBuilder)
+     */
+    public BVHBuilder.Statistics compileBVH() {
+        return compileBVH(new BVHBuilder());
+    }
 
-        List<Intersectable> validGeometries = new ArrayList<>();
-        for (Intersectable geometry : flattenedGeometries) {
-            if (geometry.getBoundingBox() == null && !(geometry instanceof Geometries)) {
-                geometry.createCBR();
-            }
-            if (geometry.getBoundingBox() != null) {
-                validGeometries.add(geometry);
-            }
-        }
+    /**
+     * Compiles all the geometries in the collection into a {@link LinearBVH}, a flattened
+     * array-based hierarchy traversed without per-node objects. Nested collections are flattened
+     * first. The compiled hierarchy replaces this collection's contents, and the unbounded
+     * geometries (e.g. planes) stay directly in this collection next to it.
+     *
+     * @param builder the builder holding the construction settings
+     * @return statistics of the compiled hierarchy
+     */
+    public BVHBuilder.Statistics compileBVH(BVHBuilder builder) {
+        long startTime = System.nanoTime();
 
-        System.out.println("Valid geometries with bounding boxes: " + validGeometries.size());
+        List<Intersectable> unbounded = new ArrayList<>();
+        Intersectable[] primitives = splitBounded(unbounded);
+        BVHBuilder.Tree tree = builder.buildLinearTree(primitives);
+        setCompiled(tree.root() == null ? null : new LinearBVH(tree.root(), tree.references(primitives)), unbounded);
 
-        if (validGeometries.size() <= 2) {
-            geometries.clear();
-            geometries.addAll(validGeometries);
-            System.out.println("Too few valid geometries for BVH split. Returning.");
-            return;
-        }
+        bvhStatistics = BVHBuilder.statistics(tree.root(), unbounded.size(), System.nanoTime() - startTime);
+        return bvhStatistics;
+    }
 
-        int bestAxis = -1;
-        int bestSplitIndex = -1;
-        double bestCost = Double.POSITIVE_INFINITY;
-
-        for (int axis = 0; axis < 3; axis++) {
-            List<Intersectable> sorted = new ArrayList<>(validGeometries);
-            final int currentAxis = axis;
-            sorted.sort(Comparator.comparingDouble(g -> g.getBoundingBox().center(currentAxis)));
-
-            System.out.println("sorted.size() " + sorted.size());
-            for (int splitIndex = 1; splitIndex < sorted.size(); splitIndex++){
-                CBR leftBox = null;
-                for (int i = 0; i < splitIndex; i++) {
-                    CBR box = sorted.get(i).getBoundingBox();
-                    leftBox = (leftBox == null) ? box : leftBox.surround(box);
-                }
-
-                CBR rightBox = null;
-                for (int i = splitIndex; i < sorted.size(); i++) {
-                    CBR box = sorted.get(i).getBoundingBox();
-                    rightBox = (rightBox == null) ? box : rightBox.surround(box);
-                }
-
-                if (leftBox != null && rightBox != null) {
-                    double leftSA = leftBox.surfaceArea();
-                    double rightSA = rightBox.surfaceArea();
-                    int leftCount = splitIndex;
-                    int rightCount = sorted.size() - splitIndex;
-                    double cost = leftSA * leftCount + rightSA * rightCount;
-
-                    System.out.printf("Axis %d, Split %d: cost = %.2f%n", axis, splitIndex, cost);
-
-                    if (cost < bestCost) {
-                        bestCost = cost;
-                        bestAxis = currentAxis;
-                        bestSplitIndex = splitIndex;
-                    }
-                }
-            }
-        }
+    /**
+     * Compiles all the geometries in the collection into a {@link CompactBVH}
+     * with the default {@link BVHBuilder} settings.
+     *
+     * @return statistics of the built (binary) hierarchy
+     * @see #compileCompactBVH(BVHBuilder)
+     */
+    public BVHBuilder.Statistics compileCompactBVH() {
+        return compileCompactBVH(new BVHBuilder());
+    }
 
-        if (bestAxis == -1 || bestSplitIndex == -1) {
-            geometries.clear();
-            geometries.addAll(validGeometries);
-            System.out.println("No suitable split found. Returning.");
-            return;
+    /**
+     * Compiles all the geometries in the collection into a {@link CompactBVH} - 4-wide nodes with
+     * quantized bounds, taking several times less memory than {@link #compileBVH(BVHBuilder)} for
+     * a somewhat slower traversal. Nested collections and compiled structures are flattened first,
+     * and the unbounded geometries stay directly in this collection next to the hierarchy.
+     *
+     * @param builder the builder holding the construction settings
+     * @return statistics of the built (binary) hierarchy, before it is collapsed into wide nodes
+     */
+    public BVHBuilder.Statistics compileCompactBVH(BVHBuilder builder) {
+        long startTime = System.nanoTime();
+
+        List<Intersectable> unbounded = new ArrayList<>();
+        Intersectable[] primitives = splitBounded(unbounded);
+        BVHBuilder.Tree tree = builder.buildLinearTree(primitives);
+        setCompiled(tree.root() == null ? null : new CompactBVH(tree.root(), tree.references(primitives)), unbounded);
+
+        bvhStatistics = BVHBuilder.statistics(tree.root(), unbounded.size(), System.nanoTime() - startTime);
+        return bvhStatistics;
+    }
+
+    /**
+     * Compiles all the geometries in the collection into a {@link LinearBVH} like
+     * {@link #compileBVH(BVHBuilder)}, reusing the hierarchy stored in the cache when the
+     * bounded geometries and builder settings are unchanged, and storing it otherwise.
+     * A builder with spatial splits bypasses the cache (see {@link BVHCache}).
+     *
+     * @param builder the builder holding the construction settings
+     * @param cache   the cache of compiled hierarchies
+     * @return statistics of the compiled hierarchy (the build time is the load time when cached)
+     */
+    public BVHBuilder.Statistics compileBVH(BVHBuilder builder, BVHCache cache) {
+        long startTime = System.nanoTime();
+
+        List<Intersectable> unbounded = new ArrayList<>();
+        Intersectable[] primitives = splitBounded(unbounded);
+        if (primitives.length == 0 || builder.getSpatialSplitBudget() > 0)
+            return compileBVH(builder);
+        String key = cache.key(primitives, builder);
+        LinearBVH bvh = cache.load(key, primitives);
+        if (bvh == null) {
+            BVHBuilder.Tree tree = builder.buildLinearTree(primitives);
+            bvh = new LinearBVH(tree.root(), tree.references(primitives));
+            cache.store(key, bvh, tree.order());
         }
+        setCompiled(bvh, unbounded);
 
-        System.out.println("Best split axis: " + bestAxis + ", index: " + bestSplitIndex + ", cost: " + bestCost);
+        bvhStatistics = bvh.statistics(unbounded.size(), System.nanoTime() - startTime);
+        return bvhStatistics;
+    }
 
-        List<Intersectable> sorted = new ArrayList<>(validGeometries);
-        final int splitAxis = bestAxis;
-        sorted.sort(Comparator.comparingDouble(g -> g.getBoundingBox().center(splitAxis)));
+    /**
+     * Replaces the collection's contents by a compiled hierarchy and the unbounded geometries.
+     *
+     * @param bvh       the compiled hierarchy, or {@code null} if there are no bounded geometries
+     * @param unbounded the unbounded geometries
+     */
+    private void setCompiled(Intersectable bvh, List<Intersectable> unbounded) {
+        geometries.clear();
+        setBoundingBox(null);
+        boundedBox = null;
+        if (bvh != null) {
+            geometries.add(bvh);
+            boundedBox = bvh.getBoundingBox();
+            if (unbounded.isEmpty())
+                setBoundingBox(boundedBox);
+        }
+        geometries.addAll(unbounded);
+    }
 
-        Geometries left = new Geometries();
-        Geometries right = new Geometries();
+    /**
+     * Refits the compiled BVH of the collection with the default {@link BVHBuilder} settings.
+     *
+     * @return true if the hierarchy was refitted, false if it was rebuilt
+     * @see #refitBVH(BVHBuilder)
+     */
+    public boolean refitBVH() {
+        return refitBVH(new BVHBuilder());
+    }
 
-        for (int i = 0; i < bestSplitIndex; i++) {
-            left.geometries.add(sorted.get(i));
+    /**
+     * Updates the compiled BVH of the collection after its geometries have moved (e.g. by
+     * {@link Instance#setTransform}), for rendering animation frames without rebuilding the tree.
+     * The hierarchy is refitted - its topology is kept and the node bounds are recomputed bottom-up.
+     * If the refit grows the SAH cost beyond the builder's {@link BVHBuilder#getRebuildThreshold()
+     * rebuild threshold}, or nothing was compiled yet, the hierarchy is rebuilt by
+     * {@link #compileBVH(BVHBuilder)} instead. A {@link CompactBVH} cannot be refitted
+     * (its quantized bounds are relative to the parent's), so it is always rebuilt.
+     *
+     * @param builder the builder holding the rebuild threshold and the construction settings
+     * @return true if the hierarchy was refitted, false if it was rebuilt
+     */
+    public boolean refitBVH(BVHBuilder builder) {
+        long startTime = System.nanoTime();
+        LinearBVH bvh = null;
+        for (Intersectable geometry : geometries) {
+            if (geometry instanceof LinearBVH linear) bvh = linear;
+            if (geometry instanceof CompactBVH) {
+                compileCompactBVH(builder);
+                return false;
+            }
         }
-        for (int i = bestSplitIndex; i < sorted.size(); i++) {
-            right.geometries.add(sorted.get(i));
+        if (bvh == null || bvh.refit() > builder.getRebuildThreshold()) {
+            compileBVH(builder);
+            return false;
         }
 
-        System.out.println("Splitting into left (" + left.geometries.size() + ") and right (" + right.geometries.size() + ") at depth " + depth);
+        boundedBox = bvh.getBoundingBox();
+        if (getBoundingBox() != null)
+            setBoundingBox(boundedBox);
+        bvhStatistics = bvh.statistics(geometries.size() - 1, System.nanoTime() - startTime);
+        return true;
+    }
+
+    /**
+     * Compiles all the geometries in the collection into a {@link RegularGrid} with the
+     * {@link RegularGrid#DEFAULT_DENSITY default density}.
+     *
+     * @return the compiled grid, or {@code null} if there are no bounded geometries
+     * @see #compileGrid(double)
+     */
+    public RegularGrid compileGrid() {
+        return compileGrid(RegularGrid.DEFAULT_DENSITY);
+    }
 
-        left.createBVH(depth + 1);
-        right.createBVH(depth + 1);
+    /**
+     * Compiles all the geometries in the collection into a {@link RegularGrid}. Nested collections
+     * and previously compiled structures are flattened first. The grid replaces this collection's
+     * contents, and the unbounded geometries (e.g. planes) stay directly in this collection next to it.
+     *
+     * @param density the target amount of voxels per bounded geometry
+     * @return the compiled grid, or {@code null} if there are no bounded geometries
+     */
+    public RegularGrid compileGrid(double density) {
+        List<Intersectable> unbounded = new ArrayList<>();
+        Intersectable[] primitives = splitBounded(unbounded);
 
         geometries.clear();
-        geometries.add(left);
-        geometries.add(right);
+        setBoundingBox(null);
+        boundedBox = null;
+        RegularGrid grid = null;
+        if (primitives.length > 0) {
+            grid = new RegularGrid(primitives, density);
+            geometries.add(grid);
+            boundedBox = grid.getBoundingBox();
+            if (unbounded.isEmpty())
+                setBoundingBox(boundedBox);
+        }
+        geometries.addAll(unbounded);
+        return grid;
+    }
+
+    /**
+     * Flattens the collection and splits it into bounded and unbounded geometries,
+     * creating the bounding boxes of the bounded ones.
+     *
+     * @param unbounded list to receive the unbounded geometries
+     * @return the bounded geometries
+     */
+    private Intersectable[] splitBounded(List<Intersectable> unbounded) {
+        List<Intersectable> flattenedGeometries = new ArrayList<>();
+        flattenGeometries(geometries, flattenedGeometries);
 
-        CBR leftBox = left.getBoundingBox();
-        CBR rightBox = right.getBoundingBox();
+        List<Intersectable> bounded = new ArrayList<>();
+        for (Intersectable geometry : flattenedGeometries)
+            (geometry.createCBR() != null ? bounded : unbounded).add(geometry);
+        return bounded.toArray(new Intersectable[0]);
+    }
 
-        if (leftBox == null) leftBox = left.createCBR();
-        if (rightBox == null) rightBox = right.createCBR();
+    /**
+     * Returns the statistics of the last BVH built or compiled over this collection.
+     *
+     * @return the statistics, or {@code null} if no BVH was built
+     */
+    public BVHBuilder.Statistics getBVHStatistics() {
+        return bvhStatistics;
+    }
 
-        if (leftBox != null && rightBox != null) {
-            setBoundingBox(leftBox.surround(rightBox));
-        } else if (leftBox != null) {
-            setBoundingBox(leftBox);
-        } else if (rightBox != null) {
-            setBoundingBox(rightBox);
+    /**
+     * Converts a node of the built hierarchy into a geometry of the tree.
+     * A leaf holding a single primitive is replaced by the primitive itself.
+     *
+     * @param node       the node to convert
+     * @param primitives the primitives ordered by the builder
+     * @return the matching geometry with its bounding box set
+     */
+    private static Intersectable toGeometries(BVHBuilder.Node node, Intersectable[] primitives) {
+        if (node.isLeaf() && node.count == 1)
+            return primitives[node.start];
+
+        Geometries result = new Geometries();
+        if (node.isLeaf())
+            for (int i = node.start; i < node.start + node.count; i++)
+                result.geometries.add(primitives[i]);
+        else {
+            result.geometries.add(toGeometries(node.left, primitives));
+            result.geometries.add(toGeometries(node.right, primitives));
         }
+        result.setBoundingBox(toAABB(node.bounds));
+        return result;
+    }
 
-        System.out.println("Bounding box set at depth " + depth + ", finished processing.");
+    /**
+     * Creates an AABB from node bounds.
+     *
+     * @param bounds min x, y, z followed by max x, y, z
+     * @return the AABB
+     */
+    private static AABB toAABB(double[] bounds) {
+        return new AABB(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
     }
 
 
@@ -265,6 +627,15 @@ public class Geometries extends Intersectable {
                 // Recursively flatten nested Geometries
                 Geometries nestedGeometries = (Geometries) geometry;
                 flattenGeometries(nestedGeometries.geometries, target);
+            } else if (geometry instanceof LinearBVH bvh) {
+                // Unpack the primitives of a previously compiled hierarchy
+                Collections.addAll(target, bvh.getPrimitives());
+            } else if (geometry instanceof CompactBVH bvh) {
+                // Unpack the primitives of a previously compiled compact hierarchy
+                Collections.addAll(target, bvh.getPrimitives());
+            } else if (geometry instanceof RegularGrid grid) {
+                // Unpack the primitives of a previously compiled grid
+                Collections.addAll(target, grid.getPrimitives());
             } else {
                 // Add primitive geometry directly
                 target.add(geometry);
@@ -1,9 +1,6 @@
 package geometries;
 
-import primitives.Color;
-import primitives.Material;
-import primitives.Point;
-import primitives.Vector;
+import primitives.*;
 
 /**
  * Abstract class representing a geometric object.
@@ -37,4 +34,31 @@ public abstract class Geometry extends Intersectable {
      * @return The normal vector at the given point.
      */
     public abstract Vector getNormal(Point p);
+
+    /**
+     * An opaque geometry blocks the ray at its first intersection,
+     * so any single hit decides its transparency.
+     */
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        if (!material.kT.lowerThan(minK))
+            return super.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+        Hit hit = Hit.push(1, maxDistance)[0];
+        try {
+            return calculateClosestHitHelper(ray, hit) ? ktr.product(material.kT) : ktr;
+        } finally {
+            Hit.pop();
+        }
+    }
+
+    /**
+     * Creates the intersection of a hit recorded by the kernel of the geometry,
+     * unless the kernel created it already.
+     */
+    @Override
+    protected Intersection createIntersection(Ray ray, Hit hit) {
+        return hit.intersection != null
+                ? hit.intersection
+                : new Intersection(this, ray.getPoint(hit.distance), hit.distance);
+    }
 }
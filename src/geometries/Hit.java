@@ -0,0 +1,135 @@
+package geometries;
+
+import geometries.Intersectable.Intersection;
+import primitives.Ray;
+
+import java.util.Arrays;
+
+/**
+ * Reusable record of the closest hit of a ray, filled in place by the intersection kernels
+ * while a closest hit query runs. A kernel records the owner and the distance of a hit
+ * (and the face, for a mesh), so the candidate hits replaced by closer ones are never materialized -
+ * only the winning hit is turned into an {@link Intersection}, by {@link #toIntersection(Ray)}.
+ * <p>
+ * The records are taken from a stack of the thread, one level per running query
+ * (an instance queries its object while the query of the scene is still running).
+ * The hit of an instance keeps the object-space hit of its object in a nested record.
+ */
+final class Hit {
+    /** The intersectable whose kernel found the hit, {@code null} while no hit is found */
+    Intersectable owner;
+    /** Distance of the hit from the ray head - the limit of the query while no hit is found */
+    double distance;
+    /** Kernel specific data of the hit, e.g. the face of a mesh */
+    int index;
+    /** The intersection of the hit, for kernels which create it anyway */
+    Intersection intersection;
+    /** The object-space hit of an instance, created on first use */
+    private Hit objectHit;
+
+    /** The records of the running queries of each thread */
+    private static final ThreadLocal<Levels> LEVELS = ThreadLocal.withInitial(Levels::new);
+
+    /**
+     * Stack of the records of a thread - each level holds a record per ray of a packet.
+     */
+    private static final class Levels {
+        private Hit[][] hits = new Hit[2][];
+        private int depth;
+    }
+
+    /**
+     * Records a hit found by a kernel.
+     *
+     * @param owner    the intersectable which will create the intersection of the hit
+     * @param distance distance of the hit from the ray head
+     * @return true, for the kernel to return
+     */
+    boolean set(Intersectable owner, double distance) {
+        this.owner = owner;
+        this.distance = distance;
+        this.intersection = null;
+        return true;
+    }
+
+    /**
+     * Records a hit whose intersection is already created.
+     *
+     * @param owner        the intersectable which found the hit
+     * @param intersection the intersection of the hit
+     * @return true, for the kernel to return
+     */
+    boolean set(Intersectable owner, Intersection intersection) {
+        set(owner, intersection.distance);
+        this.intersection = intersection;
+        return true;
+    }
+
+    /**
+     * Returns the record of the object-space hit of an instance.
+     *
+     * @return the nested record
+     */
+    Hit objectHit() {
+        if (objectHit == null) objectHit = new Hit();
+        return objectHit;
+    }
+
+    /**
+     * Copies a hit, with the object-space hits of nested instances.
+     *
+     * @param hit the hit to copy
+     */
+    void copy(Hit hit) {
+        owner = hit.owner;
+        distance = hit.distance;
+        index = hit.index;
+        intersection = hit.intersection;
+        if (hit.objectHit != null) objectHit().copy(hit.objectHit);
+    }
+
+    /**
+     * Creates the intersection of the recorded hit.
+     *
+     * @param ray the ray of the query
+     * @return the intersection, or {@code null} if no hit was found
+     */
+    Intersection toIntersection(Ray ray) {
+        return owner == null ? null : owner.createIntersection(ray, this);
+    }
+
+    /**
+     * Takes the records of a new query from the stack of the thread.
+     * The query must release them by {@link #pop()}.
+     *
+     * @param count       amount of the rays of the query
+     * @param maxDistance the limit of the query
+     * @return the records, the first {@code count} of them reset to the limit
+     */
+    static Hit[] push(int count, double maxDistance) {
+        Levels levels = LEVELS.get();
+        if (levels.depth == levels.hits.length)
+            levels.hits = Arrays.copyOf(levels.hits, 2 * levels.depth);
+        Hit[] hits = levels.hits[levels.depth];
+        if (hits == null) {
+            hits = new Hit[Intersectable.MAX_PACKET_SIZE];
+            for (int i = 0; i < hits.length; i++)
+                hits[i] = new Hit();
+            levels.hits[levels.depth] = hits;
+        }
+        ++levels.depth;
+        for (int i = 0; i < count; i++) {
+            hits[i].owner = null;
+            hits[i].distance = maxDistance;
+            hits[i].intersection = null;
+        }
+        return hits;
+    }
+
+    /**
+     * Releases the records of the last query of the thread.
+     */
+    static void pop() {
+        --LEVELS.get().depth;
+    }
+}
@@ -0,0 +1,192 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A placed copy of a shared object: the object (typically a mesh compiled into a BVH)
+ * together with an affine transformation from the object's space to the scene.
+ * <p>
+ * Rays are transformed into object space instead of the geometry being duplicated, so many
+ * instances of a large object cost the memory of one. A scene BVH built over the instances
+ * is the top level of a two-level hierarchy: when instances move, only that small tree needs
+ * to be rebuilt, while the shared bottom-level hierarchy stays as is.
+ * <p>
+ * The returned intersections refer to a scene-space view of the intersected geometry, which
+ * transforms its normals and shares its emission and material.
+ */
+public class Instance extends Intersectable {
+    /** The shared object, in object space */
+    private final Intersectable object;
+    /** Transformation from object space to scene space */
+    private Transform transform;
+
+    /**
+     * Constructs an instance of a shared object.
+     * The object should be compiled (e.g. by {@link Geometries#compileBVH()}) once,
+     * before it is shared between instances.
+     *
+     * @param object    the shared object, in object space
+     * @param transform the transformation from object space to scene space
+     */
+    public Instance(Intersectable object, Transform transform) {
+        this.object = object;
+        this.transform = transform;
+    }
+
+    /**
+     * Returns the shared object.
+     *
+     * @return the object
+     */
+    public Intersectable getObject() {
+        return object;
+    }
+
+    /**
+     * Returns the transformation from object space to scene space.
+     *
+     * @return the transformation
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Moves the instance by replacing its transformation. The bounding box is updated; the hierarchy
+     * holding the instance must then be refitted (see {@link Geometries#refitBVH()}) or rebuilt.
+     * Must not be called while rendering.
+     *
+     * @param transform the new transformation from object space to scene space
+     * @return this instance (for chaining)
+     */
+    public Instance setTransform(Transform transform) {
+        this.transform = transform;
+        if (getBoundingBox() != null)
+            updateCBR();
+        return this;
+    }
+
+    /**
+     * The scene-space view of a geometry of the shared object.
+     */
+    private static final class TransformedGeometry extends Geometry {
+        private final Geometry geometry;
+        private final Transform transform;
+
+        private TransformedGeometry(Geometry geometry, Transform transform) {
+            this.geometry = geometry;
+            this.transform = transform;
+        }
+
+        @Override
+        public Color getEmission() {
+            return geometry.getEmission();
+        }
+
+        @Override
+        public Material getMaterial() {
+            return geometry.getMaterial();
+        }
+
+        @Override
+        public Vector getNormal(Point p) {
+            return transform.transformNormal(geometry.getNormal(transform.inverseTransformPoint(p)));
+        }
+
+        @Override
+        protected CBR createBoundingBoxHelper() {
+            return null; // the view is not placed in any hierarchy
+        }
+
+        /**
+         * Intersects the geometry in object space, as the instance does.
+         */
+        @Override
+        protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+            return intersect(geometry, transform, ray, maxDistance);
+        }
+    }
+
+    /**
+     * Intersects an object-space intersectable with a scene-space ray.
+     *
+     * @param object      the intersectable, in object space
+     * @param transform   the transformation from object space to scene space
+     * @param ray         the scene-space ray
+     * @param maxDistance the maximum scene-space distance from the ray origin to consider
+     * @return the scene-space intersections, or {@code null} if there are none
+     */
+    private static List<Intersection> intersect(Intersectable object, Transform transform, Ray ray,
+                                                double maxDistance) {
+        double stretch = transform.inverseStretch(ray.getDirection());
+        List<Intersection> hits = object.calculateIntersections(transform.inverseTransformRay(ray), maxDistance * stretch);
+        if (hits == null) return null;
+        List<Intersection> intersections = new ArrayList<>(hits.size());
+        for (Intersection hit : hits)
+            intersections.add(toScene(hit, transform, ray, stretch));
+        return intersections;
+    }
+
+    /**
+     * Converts an object-space intersection to scene space.
+     *
+     * @param hit       the object-space intersection
+     * @param transform the transformation from object space to scene space
+     * @param ray       the scene-space ray
+     * @param stretch   the ratio of object-space to scene-space distances along the ray
+     * @return the scene-space intersection
+     */
+    private static Intersection toScene(Intersection hit, Transform transform, Ray ray, double stretch) {
+        double distance = hit.distance / stretch;
+        return new Intersection(new TransformedGeometry(hit.geometry, transform), ray.getPoint(distance), distance);
+    }
+
+    @Override
+    protected CBR createBoundingBoxHelper() {
+        CBR box = object.createCBR();
+        return box instanceof AABB aabb ? transform.transformBox(aabb) : null;
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        return intersect(object, transform, ray, maxDistance);
+    }
+
+    /**
+     * Searches the object in its own space, in a record of its own, so that a miss keeps the hit found so far.
+     * A closer object-space hit is kept in the hit record, and converted to scene space
+     * only if it is the final closest hit.
+     */
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double stretch = transform.inverseStretch(ray.getDirection());
+        Hit objectHit = Hit.push(1, hit.distance * stretch)[0];
+        try {
+            if (!object.calculateClosestHit(transform.inverseTransformRay(ray), objectHit)) return false;
+            hit.set(this, objectHit.distance / stretch);
+            hit.objectHit().copy(objectHit);
+            return true;
+        } finally {
+            Hit.pop();
+        }
+    }
+
+    /**
+     * Creates the intersection of the recorded object-space hit, converted to scene space.
+     */
+    @Override
+    protected Intersection createIntersection(Ray ray, Hit hit) {
+        Intersection closest = hit.objectHit().toIntersection(transform.inverseTransformRay(ray));
+        return new Intersection(new TransformedGeometry(closest.geometry, transform),
+                ray.getPoint(hit.distance), hit.distance);
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        double stretch = transform.inverseStretch(ray.getDirection());
+        return object.calculateTransparency(transform.inverseTransformRay(ray), maxDistance * stretch, ktr, minK);
+    }
+}
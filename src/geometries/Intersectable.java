@@ -1,6 +1,5 @@
 package geometries;
 
-import lighting.LightSource;
 import primitives.*;
 
 import java.util.List;
@@ -13,6 +12,8 @@ import java.util.Objects;
  * between the ray and the geometric shape.
  */
 public abstract class Intersectable {
+    /** Maximal amount of rays in a packet - the packet's active rays are kept in a bit mask */
+    public static final int MAX_PACKET_SIZE = Long.SIZE;
 
     private CBR boundingBox;
 
@@ -24,6 +25,16 @@ public abstract class Intersectable {
         return boundingBox;
     }
 
+    /**
+     * Recreates the bounding box, after the geometry has changed (e.g. an instance has moved).
+     *
+     * @return the new bounding box
+     */
+    public final CBR updateCBR() {
+        boundingBox = createBoundingBoxHelper();
+        return boundingBox;
+    }
+
     public CBR getBoundingBox() {
         return boundingBox;
     }
@@ -39,17 +50,28 @@ public abstract class Intersectable {
         public final Geometry geometry;
         public final Point point;
         public final Material material;
-        public Vector v;
-        public Vector normal;
-        public double vNormal;
-        public LightSource light;
-        public Vector l;
-        public double lNormal;
+        /**
+         * Distance of the point from the head of the intersecting ray,
+         * {@link Double#NaN} if the point was not found by a ray query
+         */
+        public final double distance;
 
         public Intersection(Geometry geometry, Point point) {
+            this(geometry, point, Double.NaN);
+        }
+
+        /**
+         * Constructs an intersection found by a ray query.
+         *
+         * @param geometry the intersected geometry
+         * @param point    the intersection point
+         * @param distance distance of the point from the ray head
+         */
+        public Intersection(Geometry geometry, Point point, double distance) {
             this.geometry = geometry;
             this.point = point;
             this.material = geometry != null ? geometry.getMaterial() : null;
+            this.distance = distance;
         }
 
         @Override
@@ -112,9 +134,200 @@ public abstract class Intersectable {
      * or {@code null} if no intersections were found
      */
     public final List<Intersection> calculateIntersections(Ray ray, double maxDistance) {
+        if (boundingBox != null && boundingBox.entryDistance(ray, maxDistance) == Double.POSITIVE_INFINITY)
+            return null;
         return calculateIntersectionsHelper(ray, maxDistance);
     }
 
+    /**
+     * Returns the closest {@link Intersection} between the given ray and this geometry,
+     * without limiting the distance (i.e., up to infinity).
+     *
+     * @param ray the ray to intersect
+     * @return the closest {@link Intersection}, or {@code null} if no intersection was found
+     */
+    public final Intersection calculateClosestIntersection(Ray ray) {
+        return calculateClosestIntersection(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns the closest {@link Intersection} between the given ray and this geometry,
+     * limited to a maximum distance from the ray origin.
+     *
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the closest {@link Intersection} within the specified distance,
+     * or {@code null} if no intersection was found
+     */
+    public final Intersection calculateClosestIntersection(Ray ray, double maxDistance) {
+        if (boundingBox != null && boundingBox.entryDistance(ray, maxDistance) == Double.POSITIVE_INFINITY)
+            return null;
+        Hit hit = Hit.push(1, maxDistance)[0];
+        try {
+            return calculateClosestHitHelper(ray, hit) ? hit.toIntersection(ray) : null;
+        } finally {
+            Hit.pop();
+        }
+    }
+
+    /**
+     * Searches for a hit closer than the one recorded, testing the bounding box first.
+     * Used by geometry collections to search their children.
+     *
+     * @param ray the ray to intersect
+     * @param hit the closest hit so far, whose distance limits the search - updated by a closer hit
+     * @return true if a closer hit was found
+     */
+    protected final boolean calculateClosestHit(Ray ray, Hit hit) {
+        if (boundingBox != null && boundingBox.entryDistance(ray, hit.distance) == Double.POSITIVE_INFINITY)
+            return false;
+        return calculateClosestHitHelper(ray, hit);
+    }
+
+    /**
+     * Returns the closest {@link Intersection} of each ray of a packet of coherent rays
+     * (e.g. the rays of one pixel), which traverse the geometry together.
+     *
+     * @param rays the rays of the packet, at most {@link #MAX_PACKET_SIZE}
+     * @return the closest intersection of every ray, {@code null} for a ray without intersections
+     * @throws IllegalArgumentException if the packet is too large
+     */
+    public final Intersection[] calculateClosestIntersections(Ray[] rays) {
+        return calculateClosestIntersections(rays, rays.length);
+    }
+
+    /**
+     * Returns the closest {@link Intersection} of each ray of a packet held in the first rays of an array,
+     * so that the caller may reuse one array for packets of different sizes.
+     *
+     * @param rays  the array holding the rays of the packet
+     * @param count the amount of rays in the packet, at most {@link #MAX_PACKET_SIZE}
+     * @return the closest intersection of every ray of the packet, {@code null} for a ray without intersections
+     * @throws IllegalArgumentException if the packet is too large or the array is too short for it
+     */
+    public final Intersection[] calculateClosestIntersections(Ray[] rays, int count) {
+        if (count > MAX_PACKET_SIZE)
+            throw new IllegalArgumentException("A packet holds at most " + MAX_PACKET_SIZE + " rays");
+        if (count < 0 || count > rays.length)
+            throw new IllegalArgumentException("The packet size must be within the array");
+        Intersection[] closest = new Intersection[count];
+        if (count == 0) return closest;
+        Hit[] hits = Hit.push(count, Double.POSITIVE_INFINITY);
+        try {
+            calculateClosestHits(rays, hits, -1L >>> (MAX_PACKET_SIZE - count));
+            for (int i = 0; i < count; i++)
+                closest[i] = hits[i].toIntersection(rays[i]);
+        } finally {
+            Hit.pop();
+        }
+        return closest;
+    }
+
+    /**
+     * Updates the closest hits of the active rays of a packet with this geometry.
+     * The geometry is skipped only when its bounding box is missed by all the active rays.
+     *
+     * @param rays the rays of the packet
+     * @param hits the closest hit of each ray so far, updated
+     * @param mask the active rays, bit {@code i} for ray {@code i}
+     */
+    protected final void calculateClosestHits(Ray[] rays, Hit[] hits, long mask) {
+        if (boundingBox != null) {
+            long hit = 0;
+            for (long m = mask; m != 0; m &= m - 1) {
+                int i = Long.numberOfTrailingZeros(m);
+                if (boundingBox.entryDistance(rays[i], hits[i].distance) != Double.POSITIVE_INFINITY)
+                    hit |= 1L << i;
+            }
+            if (hit == 0) return;
+            mask = hit;
+        }
+        calculateClosestHitsHelper(rays, hits, mask);
+    }
+
+    /**
+     * Helper of the packet query - tests each active ray on its own.
+     * Acceleration structures override it to traverse with the whole packet.
+     *
+     * @param rays the rays of the packet
+     * @param hits the closest hit of each ray so far, updated
+     * @param mask the active rays, whose bounding box test passed
+     */
+    protected void calculateClosestHitsHelper(Ray[] rays, Hit[] hits, long mask) {
+        for (long m = mask; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            calculateClosestHitHelper(rays[i], hits[i]);
+        }
+    }
+
+    /**
+     * Calculates the transparency of the geometry along a ray: the product of the transparency
+     * coefficients ({@code kT}) of all the intersections within a maximum distance.
+     * This is the any-hit query of shadow rays - no intersections are collected, and the search
+     * stops as soon as the product falls below the cutoff (e.g. at the first opaque blocker).
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @param minK        the cutoff - products below it are not refined further
+     * @return the transparency coefficient along the ray
+     */
+    public final Double3 calculateTransparency(Ray ray, double maxDistance, double minK) {
+        return calculateTransparency(ray, maxDistance, Double3.ONE, minK);
+    }
+
+    /**
+     * Checks whether the ray is blocked within a maximum distance, i.e. its transparency
+     * falls below the cutoff.
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @param minK        the cutoff under which the ray is considered blocked
+     * @return true if the ray is blocked
+     * @see #calculateTransparency(Ray, double, double)
+     */
+    public final boolean occluded(Ray ray, double maxDistance, double minK) {
+        return calculateTransparency(ray, maxDistance, minK).lowerThan(minK);
+    }
+
+    /**
+     * Multiplies a running transparency coefficient by the transparency of the geometry along a ray,
+     * testing the bounding box first. Used by geometry collections to thread the product
+     * through their children.
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @param ktr         the transparency coefficient accumulated so far
+     * @param minK        the cutoff - products below it are not refined further
+     * @return the updated transparency coefficient
+     */
+    protected final Double3 calculateTransparency(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        if (boundingBox != null && boundingBox.entryDistance(ray, maxDistance) == Double.POSITIVE_INFINITY)
+            return ktr;
+        return calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+    }
+
+    /**
+     * Internal method that multiplies a running transparency coefficient by the transparency
+     * coefficients of the intersections up to a given distance. The bounding box has already been
+     * tested by the caller. The default implementation goes over all the intersections and stops
+     * once the product falls below the cutoff.
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @param ktr         the transparency coefficient accumulated so far
+     * @param minK        the cutoff - products below it are not refined further
+     * @return the updated transparency coefficient
+     */
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray, maxDistance);
+        if (intersections == null) return ktr;
+        for (Intersection intersection : intersections) {
+            ktr = ktr.product(intersection.material.kT);
+            if (ktr.lowerThan(minK)) break;
+        }
+        return ktr;
+    }
+
     /**
      * Internal abstract method to be implemented by subclasses that computes
      * the list of intersections between a ray and the geometry, up to a given distance.
@@ -125,6 +338,41 @@ public abstract class Intersectable {
      */
     protected abstract List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance);
 
+    /**
+     * Internal method that searches for the closest hit between a ray and the geometry,
+     * closer than the hit recorded. The bounding box has already been tested by the caller.
+     * Callers searching several geometries pass the closest hit found so far,
+     * so hits beyond it are rejected by the geometry itself.
+     * Kernels record just the distance of a hit, and create its intersection by
+     * {@link #createIntersection(Ray, Hit)} only if it is the final closest hit.
+     * The default implementation picks the closest of all the intersections by their distance.
+     *
+     * @param ray the ray to intersect
+     * @param hit the closest hit so far, whose distance limits the search - updated by a closer hit
+     * @return true if a closer hit was found
+     */
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray, hit.distance);
+        if (intersections == null) return false;
+        Intersection closest = null;
+        for (Intersection intersection : intersections)
+            if (closest == null || intersection.distance < closest.distance)
+                closest = intersection;
+        return closest != null && hit.set(this, closest);
+    }
+
+    /**
+     * Creates the intersection of the final closest hit of a query, recorded by this geometry.
+     * The default implementation returns the intersection the kernel recorded with the hit.
+     *
+     * @param ray the ray of the query
+     * @param hit the hit
+     * @return the intersection
+     */
+    protected Intersection createIntersection(Ray ray, Hit hit) {
+        return hit.intersection;
+    }
+
     // check if a ray intersect the AABB box.
     protected boolean isBoundingBoxIntersected(Ray ray) {
         return boundingBox.intersects(ray);
@@ -0,0 +1,535 @@
+package geometries;
+
+import primitives.AABB;
+import primitives.CBR;
+import primitives.Double3;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled, flattened form of a bounding volume hierarchy.
+ * <p>
+ * The nodes are laid out in depth-first order in primitive arrays: the bounds of node {@code i}
+ * are {@code bounds[6i..6i+5]} (min x, y, z followed by max x, y, z), and {@code nodes[2i]},
+ * {@code nodes[2i+1]} hold its offset and count. For a leaf the count is the (positive) amount
+ * of primitives and the offset is the index of its first primitive in the primitive array.
+ * For an interior node the left child immediately follows the node, the offset is the index
+ * of the right child and the count is {@code -(axis + 1)} of the split axis.
+ * <p>
+ * Traversal is iterative with a small explicit stack, so no lists or node objects are
+ * visited per ray.
+ * <p>
+ * A hierarchy built with spatial splits references some primitives from more than one leaf.
+ * The primitives are then mailboxed, so the all-intersections and transparency queries test
+ * each one once per ray (a repeated closest-hit test finds nothing closer, so it needs no mailbox).
+ */
+public class LinearBVH extends Intersectable {
+    /** Node bounds, 6 values per node */
+    private final double[] bounds;
+    /** Node offsets and counts, 2 values per node */
+    private final int[] nodes;
+    /** The primitives, ordered so that the primitives of each leaf are contiguous */
+    private final Intersectable[] primitives;
+    /** Size of the traversal stack - the depth of the tree */
+    private final int stackSize;
+    /** SAH cost of the hierarchy as built, relative to its root surface area */
+    private final double buildCost;
+    /**
+     * Distinct primitive id of every reference, {@code null} if no primitive is referenced twice
+     */
+    private final int[] primitiveIds;
+    /** Amount of distinct primitives */
+    private final int uniqueCount;
+    /** Per-thread mailboxes of the distinct primitives, {@code null} if no primitive is referenced twice */
+    private final ThreadLocal<Mailbox> mailboxes;
+    /** Per-thread traversal stacks */
+    private final ThreadLocal<TraversalStack> stacks;
+
+    /**
+     * Compiles the hierarchy built by {@link BVHBuilder}.
+     *
+     * @param root       root of the built hierarchy
+     * @param primitives the primitives as ordered by the builder
+     */
+    LinearBVH(BVHBuilder.Node root, Intersectable[] primitives) {
+        int nodeCount = countNodes(root);
+        this.bounds = new double[6 * nodeCount];
+        this.nodes = new int[2 * nodeCount];
+        this.primitives = primitives;
+        this.stackSize = flatten(root, bounds, nodes, 0, 0)[1] + 1;
+        this.buildCost = sahCost();
+        this.primitiveIds = primitiveIds(primitives);
+        this.uniqueCount = primitiveIds == null ? primitives.length : countUnique(primitiveIds);
+        this.mailboxes = primitiveIds == null ? null : ThreadLocal.withInitial(() -> new Mailbox(uniqueCount));
+        this.stacks = ThreadLocal.withInitial(() -> new TraversalStack(stackSize));
+        setBoundingBox(createBoundingBoxHelper());
+    }
+
+    /**
+     * Restores a compiled hierarchy from its arrays (e.g. as read by {@link BVHCache}).
+     *
+     * @param bounds     node bounds, 6 values per node
+     * @param nodes      node offsets and counts, 2 values per node, in the layout described above
+     * @param primitives the primitives, in leaf order
+     * @throws IllegalArgumentException if the nodes do not form a valid hierarchy over the primitives
+     */
+    LinearBVH(double[] bounds, int[] nodes, Intersectable[] primitives) {
+        int nodeCount = nodes.length / 2;
+        if (nodeCount == 0 || bounds.length != 6 * nodeCount)
+            throw new IllegalArgumentException("Node arrays do not match");
+        // children follow their parent, so the depths are found in one forward pass
+        int[] depths = new int[nodeCount];
+        int maxDepth = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int offset = nodes[2 * node];
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                if (offset < 0 || offset + count > primitives.length)
+                    throw new IllegalArgumentException("Leaf " + node + " is out of the primitives range");
+                maxDepth = Math.max(maxDepth, depths[node]);
+            } else {
+                if (count < -3 || node + 1 >= nodeCount || offset <= node + 1 || offset >= nodeCount)
+                    throw new IllegalArgumentException("Interior node " + node + " has invalid children");
+                depths[node + 1] = depths[offset] = depths[node] + 1;
+            }
+        }
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.primitives = primitives;
+        this.stackSize = maxDepth + 1;
+        this.buildCost = sahCost();
+        this.primitiveIds = primitiveIds(primitives);
+        this.uniqueCount = primitiveIds == null ? primitives.length : countUnique(primitiveIds);
+        this.mailboxes = primitiveIds == null ? null : ThreadLocal.withInitial(() -> new Mailbox(uniqueCount));
+        this.stacks = ThreadLocal.withInitial(() -> new TraversalStack(stackSize));
+        setBoundingBox(createBoundingBoxHelper());
+    }
+
+    /**
+     * Numbers the distinct primitives of the references.
+     *
+     * @param primitives the references
+     * @return the distinct primitive id of every reference, or {@code null} if they are all distinct
+     */
+    static int[] primitiveIds(Intersectable[] primitives) {
+        Map<Intersectable, Integer> ids = new IdentityHashMap<>();
+        int[] primitiveIds = new int[primitives.length];
+        for (int i = 0; i < primitives.length; i++) {
+            Integer id = ids.putIfAbsent(primitives[i], ids.size());
+            primitiveIds[i] = id == null ? ids.size() - 1 : id;
+        }
+        return ids.size() == primitives.length ? null : primitiveIds;
+    }
+
+    static int countUnique(int[] primitiveIds) {
+        int max = -1;
+        for (int id : primitiveIds)
+            max = Math.max(max, id);
+        return max + 1;
+    }
+
+    /**
+     * Refits the hierarchy after its primitives have moved: the tree topology is kept and the node
+     * bounds are recomputed bottom-up from the primitives' updated bounding boxes. This is much
+     * cheaper than a rebuild, but the tree degrades as the primitives move away from the
+     * positions it was built for.
+     *
+     * @return the degradation - the SAH cost after the refit relative to the cost as built
+     */
+    double refit() {
+        double[] box = new double[6];
+        for (int node = getNodeCount() - 1; node >= 0; node--) {
+            int b = 6 * node;
+            int count = nodes[2 * node + 1];
+            BVHBuilder.emptyBounds(bounds, b);
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (int i = offset; i < offset + count; i++) {
+                    AABB aabb = (AABB) primitives[i].updateCBR();
+                    box[0] = aabb.getX_min();
+                    box[1] = aabb.getY_min();
+                    box[2] = aabb.getZ_min();
+                    box[3] = aabb.getX_max();
+                    box[4] = aabb.getY_max();
+                    box[5] = aabb.getZ_max();
+                    BVHBuilder.growBounds(bounds, b, box, 0);
+                }
+            } else {
+                // children follow their parent, so they are already refitted
+                BVHBuilder.growBounds(bounds, b, bounds, 6 * (node + 1));
+                BVHBuilder.growBounds(bounds, b, bounds, 6 * nodes[2 * node]);
+            }
+        }
+        setBoundingBox(createBoundingBoxHelper());
+        return sahCost() / buildCost;
+    }
+
+    /**
+     * Computes the SAH cost of the hierarchy, relative to its root surface area,
+     * the same way as {@link BVHBuilder.Statistics#sahCost()}.
+     *
+     * @return the SAH cost
+     */
+    double sahCost() {
+        double rootArea = BVHBuilder.surfaceArea(bounds, 0);
+        double cost = 0;
+        for (int node = 0; node < getNodeCount(); node++) {
+            double relativeArea = rootArea > 0 ? BVHBuilder.surfaceArea(bounds, 6 * node) / rootArea : 1;
+            int count = nodes[2 * node + 1];
+            cost += count > 0 ? relativeArea * count * BVHBuilder.INTERSECTION_COST
+                    : relativeArea * BVHBuilder.TRAVERSAL_COST;
+        }
+        return cost;
+    }
+
+    /**
+     * Collects statistics of the hierarchy.
+     *
+     * @param unbounded      amount of unbounded geometries outside the hierarchy
+     * @param buildTimeNanos time taken to produce the hierarchy, in nanoseconds
+     * @return the statistics
+     */
+    BVHBuilder.Statistics statistics(int unbounded, long buildTimeNanos) {
+        int nodeCount = getNodeCount();
+        return new BVHBuilder.Statistics(uniqueCount, unbounded, nodeCount, (nodeCount + 1) / 2,
+                stackSize - 1, sahCost(), buildTimeNanos);
+    }
+
+    /**
+     * Returns the node bounds.
+     *
+     * @return the bounds array (not a copy)
+     */
+    double[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the node offsets and counts.
+     *
+     * @return the nodes array (not a copy)
+     */
+    int[] getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the amount of nodes in the compiled hierarchy.
+     *
+     * @return amount of nodes
+     */
+    public int getNodeCount() {
+        return nodes.length / 2;
+    }
+
+    /**
+     * Returns the amount of memory taken by the nodes.
+     *
+     * @return size of the node arrays in bytes
+     */
+    public long getNodeBytes() {
+        return (long) bounds.length * Double.BYTES + (long) nodes.length * Integer.BYTES;
+    }
+
+    /**
+     * Returns the amount of primitives in the compiled hierarchy.
+     *
+     * @return amount of primitives
+     */
+    public int getPrimitiveCount() {
+        return uniqueCount;
+    }
+
+    /**
+     * Returns the distinct primitives of the hierarchy, in leaf order.
+     *
+     * @return the primitives array (not a copy, unless primitives are referenced twice)
+     */
+    Intersectable[] getPrimitives() {
+        if (primitiveIds == null) return primitives;
+        Intersectable[] unique = new Intersectable[uniqueCount];
+        for (int i = 0; i < primitives.length; i++)
+            unique[primitiveIds[i]] = primitives[i];
+        return unique;
+    }
+
+    /**
+     * Counts the nodes of a built hierarchy.
+     *
+     * @param node the root of the hierarchy
+     * @return amount of nodes
+     */
+    static int countNodes(BVHBuilder.Node node) {
+        return node.isLeaf() ? 1 : 1 + countNodes(node.left) + countNodes(node.right);
+    }
+
+    /**
+     * Writes the node and its subtree in depth-first order starting at the given index,
+     * in the layout described above.
+     *
+     * @param node   the node to write
+     * @param bounds the node bounds array
+     * @param nodes  the node offsets and counts array
+     * @param index  the index of the node
+     * @param depth  the depth of the node
+     * @return the next free index and the depth of the subtree
+     */
+    static int[] flatten(BVHBuilder.Node node, double[] bounds, int[] nodes, int index, int depth) {
+        System.arraycopy(node.bounds, 0, bounds, 6 * index, 6);
+        if (node.isLeaf()) {
+            nodes[2 * index] = node.start;
+            nodes[2 * index + 1] = node.count;
+            return new int[]{index + 1, depth};
+        }
+        int[] left = flatten(node.left, bounds, nodes, index + 1, depth + 1);
+        int[] right = flatten(node.right, bounds, nodes, left[0], depth + 1);
+        nodes[2 * index] = left[0];
+        nodes[2 * index + 1] = -(node.axis + 1);
+        return new int[]{right[0], Math.max(left[1], right[1])};
+    }
+
+    @Override
+    protected CBR createBoundingBoxHelper() {
+        return new AABB(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+    }
+
+    /**
+     * Box test of a node.
+     *
+     * @return the entry distance, or {@link Double#POSITIVE_INFINITY} if missed
+     */
+    private double entryDistance(int node, double ox, double oy, double oz,
+                                 double ix, double iy, double iz, double maxDistance) {
+        int b = 6 * node;
+        return AABB.entryDistance(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5],
+                ox, oy, oz, ix, iy, iz, maxDistance);
+    }
+
+    /**
+     * Box test of a node for the active rays of a packet. The node bounds are loaded once for all the rays.
+     *
+     * @return the rays of the mask hitting the node within their current distance
+     */
+    private long hitMask(int node, double[] ox, double[] oy, double[] oz, double[] ix, double[] iy, double[] iz,
+                         Hit[] hits, long mask) {
+        int b = 6 * node;
+        double minX = bounds[b], minY = bounds[b + 1], minZ = bounds[b + 2];
+        double maxX = bounds[b + 3], maxY = bounds[b + 4], maxZ = bounds[b + 5];
+        long hit = 0;
+        for (long m = mask; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            if (AABB.entryDistance(minX, minY, minZ, maxX, maxY, maxZ,
+                    ox[i], oy[i], oz[i], ix[i], iy[i], iz[i], hits[i].distance) != Double.POSITIVE_INFINITY)
+                hit |= 1L << i;
+        }
+        return hit;
+    }
+
+    /**
+     * Traverses the hierarchy with the whole packet: a node is visited with the rays hitting its box,
+     * and skipped only when all of them miss it. The children are visited in the order of the
+     * packet's direction along the split axis, so the distances shrink early.
+     */
+    @Override
+    protected void calculateClosestHitsHelper(Ray[] rays, Hit[] hits, long mask) {
+        TraversalStack traversal = stacks.get().preparePackets();
+        double[] ox = traversal.ox, oy = traversal.oy, oz = traversal.oz;
+        double[] ix = traversal.ix, iy = traversal.iy, iz = traversal.iz;
+        for (long m = mask; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            Double3 origin = rays[i].getHead().get_xyz();
+            ox[i] = origin.d1();
+            oy[i] = origin.d2();
+            oz[i] = origin.d3();
+            ix[i] = rays[i].getInverseX();
+            iy[i] = rays[i].getInverseY();
+            iz[i] = rays[i].getInverseZ();
+        }
+        Double3 packetDirection = rays[Long.numberOfTrailingZeros(mask)].getDirection().get_xyz();
+
+        int[] stack = traversal.nodes;
+        long[] stackMasks = traversal.masks;
+        int top = 0;
+        int node = 0; // the root box is tested by the caller
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (long m = mask; m != 0; m &= m - 1) {
+                    int r = Long.numberOfTrailingZeros(m);
+                    for (int i = offset; i < offset + count; i++)
+                        primitives[i].calculateClosestHit(rays[r], hits[r]);
+                }
+            } else {
+                int near = node + 1;
+                int far = nodes[2 * node];
+                int axis = -count - 1;
+                if ((axis == 0 ? packetDirection.d1() : axis == 1 ? packetDirection.d2() : packetDirection.d3()) < 0) {
+                    near = far;
+                    far = node + 1;
+                }
+                long nearMask = hitMask(near, ox, oy, oz, ix, iy, iz, hits, mask);
+                long farMask = hitMask(far, ox, oy, oz, ix, iy, iz, hits, mask);
+                if (nearMask != 0) {
+                    if (farMask != 0) {
+                        stack[top] = far;
+                        stackMasks[top++] = farMask;
+                    }
+                    node = near;
+                    mask = nearMask;
+                    continue;
+                }
+                if (farMask != 0) {
+                    node = far;
+                    mask = farMask;
+                    continue;
+                }
+            }
+            // pop the next node still hit by some ray within its shrunk distance
+            do {
+                if (top == 0) return;
+                --top;
+                node = stack[top];
+                mask = hitMask(node, ox, oy, oz, ix, iy, iz, hits, stackMasks[top]);
+            } while (mask == 0);
+        }
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        List<Intersection> intersections = null;
+        Mailbox mailbox = mailboxes == null ? null : mailboxes.get();
+        int id = mailbox == null ? 0 : mailbox.next();
+        int[] stack = stacks.get().nodes;
+        int top = 0;
+        int node = 0; // the root box is tested by the caller
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (int i = offset; i < offset + count; i++) {
+                    if (mailbox != null && !mailbox.mark(primitiveIds[i], id)) continue;
+                    List<Intersection> hits = primitives[i].calculateIntersections(ray, maxDistance);
+                    if (hits != null) {
+                        if (intersections == null) intersections = new ArrayList<>();
+                        intersections.addAll(hits);
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes[2 * node];
+                boolean hitLeft = entryDistance(left, ox, oy, oz, ix, iy, iz, maxDistance) != Double.POSITIVE_INFINITY;
+                boolean hitRight = entryDistance(right, ox, oy, oz, ix, iy, iz, maxDistance) != Double.POSITIVE_INFINITY;
+                if (hitLeft) {
+                    if (hitRight) stack[top++] = right;
+                    node = left;
+                    continue;
+                }
+                if (hitRight) {
+                    node = right;
+                    continue;
+                }
+            }
+            if (top == 0) return intersections;
+            node = stack[--top];
+        }
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Double3 origin = ray.getHead().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        Mailbox mailbox = mailboxes == null ? null : mailboxes.get();
+        int id = mailbox == null ? 0 : mailbox.next();
+        int[] stack = stacks.get().nodes;
+        int top = 0;
+        int node = 0; // the root box is tested by the caller
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (int i = offset; i < offset + count; i++) {
+                    if (mailbox != null && !mailbox.mark(primitiveIds[i], id)) continue;
+                    ktr = primitives[i].calculateTransparency(ray, maxDistance, ktr, minK);
+                    if (ktr.lowerThan(minK)) return ktr;
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes[2 * node];
+                boolean hitLeft = entryDistance(left, ox, oy, oz, ix, iy, iz, maxDistance) != Double.POSITIVE_INFINITY;
+                boolean hitRight = entryDistance(right, ox, oy, oz, ix, iy, iz, maxDistance) != Double.POSITIVE_INFINITY;
+                if (hitLeft) {
+                    if (hitRight) stack[top++] = right;
+                    node = left;
+                    continue;
+                }
+                if (hitRight) {
+                    node = right;
+                    continue;
+                }
+            }
+            if (top == 0) return ktr;
+            node = stack[--top];
+        }
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        Double3 origin = ray.getHead().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        boolean found = false;
+        TraversalStack traversal = stacks.get();
+        int[] stack = traversal.nodes;
+        double[] stackEntries = traversal.entries;
+        int top = 0;
+        int node = 0; // the root box is tested by the caller
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (int i = offset; i < offset + count; i++)
+                    if (primitives[i].calculateClosestHit(ray, hit))
+                        found = true;
+            } else {
+                int near = node + 1;
+                int far = nodes[2 * node];
+                double tNear = entryDistance(near, ox, oy, oz, ix, iy, iz, hit.distance);
+                double tFar = entryDistance(far, ox, oy, oz, ix, iy, iz, hit.distance);
+                if (tFar < tNear) {
+                    int temp = near;
+                    near = far;
+                    far = temp;
+                    double t = tNear;
+                    tNear = tFar;
+                    tFar = t;
+                }
+                if (tNear != Double.POSITIVE_INFINITY) {
+                    if (tFar != Double.POSITIVE_INFINITY) {
+                        stack[top] = far;
+                        stackEntries[top++] = tFar;
+                    }
+                    node = near;
+                    continue;
+                }
+            }
+            // pop the next node that may still hold a closer hit
+            do {
+                if (top == 0) return found;
+                --top;
+            } while (stackEntries[top] > hit.distance);
+            node = stack[top];
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package geometries;
+
+import java.util.Arrays;
+
+/**
+ * Mailbox of a thread for acceleration structures referencing a primitive more than once
+ * (from several voxels or leaves): the id of the last query that tested each primitive,
+ * so that every primitive is tested only once per ray.
+ */
+final class Mailbox {
+    private final int[] stamps;
+    private int query;
+
+    /**
+     * Constructs a mailbox.
+     *
+     * @param size amount of primitives
+     */
+    Mailbox(int size) {
+        stamps = new int[size];
+    }
+
+    /**
+     * Starts a new query.
+     *
+     * @return the id of the query
+     */
+    int next() {
+        if (++query == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            query = 1;
+        }
+        return query;
+    }
+
+    /**
+     * Marks the primitive as tested by the query.
+     *
+     * @param primitive the primitive index
+     * @param id        the id of the query
+     * @return true if the primitive was not tested yet by the query
+     */
+    boolean mark(int primitive, int id) {
+        if (stamps[primitive] == id) return false;
+        stamps[primitive] = id;
+        return true;
+    }
+}
@@ -63,29 +63,41 @@ public class Plane extends Geometry {
     }
 
     /**
-     * Finds the intersection point between a ray and the plane.
+     * Finds the distance of the intersection point between a ray and the plane.
      * <p>
      * Note: Intersections at the ray's starting point are not counted,
      * and rays parallel to the plane do not intersect.
      *
-     * @param ray the ray to intersect with the plane
-     * @return a list containing the intersection point, or {@code null} if there is no intersection
+     * @param ray         the ray to intersect with the plane
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the distance of the intersection, or {@link Double#POSITIVE_INFINITY} if there is none
      */
-    @Override
-    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+    private double intersect(Ray ray, double maxDistance) {
         if (p.equals(ray.getHead()))
-            return null;
+            return Double.POSITIVE_INFINITY;
 
         double nv = alignZero(normal.dotProduct(ray.getDirection()));
         if (isZero(nv))
-            return null;
+            return Double.POSITIVE_INFINITY;
 
         double t = alignZero(normal.dotProduct(p.subtract(ray.getHead()))) / nv;
 
         if (t <= 0 || alignZero(t - maxDistance) > 0)
-            return null;
+            return Double.POSITIVE_INFINITY;
 
-        return List.of(new Intersection(this, ray.getPoint(t)));
+        return t;
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        double t = intersect(ray, maxDistance);
+        return t == Double.POSITIVE_INFINITY ? null : List.of(new Intersection(this, ray.getPoint(t), t));
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double t = intersect(ray, hit.distance);
+        return t != Double.POSITIVE_INFINITY && hit.set(this, t);
     }
 
 }
\ No newline at end of file
@@ -1,8 +1,6 @@
 package geometries;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static primitives.Util.*;
 
@@ -27,6 +25,22 @@ public class Polygon extends Geometry {
      * The size of the polygon - the amount of the vertices in the polygon
      */
     private final int size;
+    /**
+     * The plane's unit normal and offset (the plane is {@code n·p = offset}),
+     * for intersecting without allocations
+     */
+    private final double nx, ny, nz, offset;
+    /**
+     * The axis dropped by the projection to 2D - the dominant axis of the normal,
+     * so the projected polygon keeps the largest area
+     */
+    private final int axis;
+    /**
+     * The projected polygon: 4 values per vertex - its 2D coordinates and the edge to the next vertex
+     */
+    private final double[] projection;
+    /** The sign of the projected polygon's vertex order: 1 if counterclockwise, -1 if clockwise */
+    private final double orientation;
 
     /**
      * Polygon constructor based on vertices list. The list must be ordered by edge
@@ -51,6 +65,19 @@ public class Polygon extends Geometry {
      *                                  </ul>
      */
     public Polygon(Point... vertices) {
+        this(true, vertices);
+    }
+
+    /**
+     * Polygon constructor for subclasses with their own intersection test, which may skip the
+     * precomputation of the plane coordinates and the 2D projection used by the polygon's test.
+     *
+     * @param project  whether to precompute the plane coordinates and the projection
+     * @param vertices list of vertices according to their order by edge path
+     * @throws IllegalArgumentException in any case of illegal combination of vertices,
+     *                                  as in {@link #Polygon(Point...)}
+     */
+    protected Polygon(boolean project, Point... vertices) {
         if (vertices.length < 3)
             throw new IllegalArgumentException("A polygon can't have less than 3 vertices");
         this.vertices = List.of(vertices);
@@ -60,9 +87,40 @@ public class Polygon extends Geometry {
         // polygon with this plane.
         // The plane holds the invariant normal (orthogonal unit) vector to the polygon
         plane = new Plane(vertices[0], vertices[1], vertices[2]);
+        Vector n = plane.getNormal(vertices[0]);
+
+        // Precompute the plane coordinates and the 2D projection for the intersection test
+        if (!project) {
+            nx = ny = nz = offset = orientation = 0;
+            axis = 0;
+            projection = null;
+        } else {
+            Double3 normal = n.get_xyz();
+            nx = normal.d1();
+            ny = normal.d2();
+            nz = normal.d3();
+            Double3 first = vertices[0].get_xyz();
+            offset = nx * first.d1() + ny * first.d2() + nz * first.d3();
+            double ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+            axis = ax >= ay && ax >= az ? 0 : ay >= az ? 1 : 2;
+            projection = new double[4 * size];
+            for (int i = 0; i < size; ++i) {
+                Double3 xyz = vertices[i].get_xyz();
+                projection[4 * i] = axis == 0 ? xyz.d2() : xyz.d1();
+                projection[4 * i + 1] = axis == 2 ? xyz.d2() : xyz.d3();
+            }
+            double area = 0;
+            for (int i = 0; i < size; ++i) {
+                int next = 4 * ((i + 1) % size);
+                projection[4 * i + 2] = projection[next] - projection[4 * i];
+                projection[4 * i + 3] = projection[next + 1] - projection[4 * i + 1];
+                area += projection[4 * i] * projection[next + 1] - projection[next] * projection[4 * i + 1];
+            }
+            orientation = area > 0 ? 1 : -1;
+        }
+
         if (size == 3) return; // no need for more tests for a Triangle
 
-        Vector n = plane.getNormal(vertices[0]);
         // Subtracting any subsequent points will throw an IllegalArgumentException
         // because of Zero Vector if they are in the same point
         Vector edge1 = vertices[size - 1].subtract(vertices[size - 2]);
@@ -118,43 +176,43 @@ public class Polygon extends Geometry {
     }
 
 
+    /**
+     * Computes the distance of a ray's intersection with the polygon, without allocations:
+     * the plane is intersected by its coordinates, and the point is tested against the edges
+     * in the precomputed projection, exiting at the first edge it is not strictly inside of.
+     * Points on the edges and vertices are not intersections.
+     *
+     * @param ray         the ray
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the distance of the intersection, or {@link Double#POSITIVE_INFINITY} if there is none
+     */
+    private double intersect(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        Double3 dir = ray.getDirection().get_xyz();
+        double nv = alignZero(nx * dir.d1() + ny * dir.d2() + nz * dir.d3());
+        if (nv == 0) return Double.POSITIVE_INFINITY; // parallel to the plane
+        double t = alignZero((offset - nx * origin.d1() - ny * origin.d2() - nz * origin.d3()) / nv);
+        if (t <= 0 || alignZero(t - maxDistance) > 0) return Double.POSITIVE_INFINITY;
+
+        double x = origin.d1() + t * dir.d1(), y = origin.d2() + t * dir.d2(), z = origin.d3() + t * dir.d3();
+        double pu = axis == 0 ? y : x;
+        double pv = axis == 2 ? y : z;
+        for (int i = 0; i < 4 * size; i += 4)
+            if (alignZero(orientation * (projection[i + 2] * (pv - projection[i + 1])
+                    - projection[i + 3] * (pu - projection[i]))) <= 0)
+                return Double.POSITIVE_INFINITY;
+        return t;
+    }
+
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        var intersections = this.plane.findIntersections(ray);
-        if (intersections == null)
-            return null;
-        Point p = intersections.getFirst();
-        // Check if the intersection point lies on any of the polygon's vertices
-        for (Point vertex : vertices)
-            if (p.equals(vertex))
-                return null;
-
-        Vector[] normals = new Vector[vertices.size()];
-        for (int i = 0; i < vertices.size(); i++) {
-            Vector v1 = null;
-            if (i == vertices.size() - 1)
-                v1 = vertices.getFirst().subtract(vertices.get(i));
-            else
-                v1 = vertices.get(i + 1).subtract(vertices.get(i));
-            Vector v2 = vertices.get(i).subtract(p);
-            try {
-                normals[i] = v1.crossProduct(v2);
-            } catch (IllegalArgumentException e) {
-                return null; // p is on edge or edge continueus
-            }
-        }
-        // check the point is inside the polygon
-        double initialDot = normals[0].dotProduct(normals[1]);
-        for (int i = 1; i < normals.length - 1; i++)
-            if (initialDot * normals[i].dotProduct(normals[i + 1]) <= 0)
-                return null; // not all in the same direction
-
-        List<Intersection> intersectionList = intersections.stream()
-                .filter(i -> alignZero(i.distance(ray.getHead()) - maxDistance) <= 0)
-                .map(i -> new Intersection(this, i)).collect(Collectors.toList());
-        if (!intersectionList.isEmpty()) {
-            return intersectionList;
-        }
-        return null;
+        double t = intersect(ray, maxDistance);
+        return t == Double.POSITIVE_INFINITY ? null : List.of(new Intersection(this, ray.getPoint(t), t));
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double t = intersect(ray, hit.distance);
+        return t != Double.POSITIVE_INFINITY && hit.set(this, t);
     }
-}
\ No newline at end of file
+}
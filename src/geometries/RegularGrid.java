@@ -0,0 +1,391 @@
+package geometries;
+
+import primitives.AABB;
+import primitives.CBR;
+import primitives.Double3;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uniform (regular) grid acceleration structure over bounded geometries.
+ * <p>
+ * The scene bounds are divided into equally sized voxels, and every primitive is referenced by all
+ * the voxels its bounding box overlaps. The voxel references are kept in primitive arrays:
+ * the primitives of voxel {@code c} are {@code cellPrimitives[cellStart[c]..cellStart[c+1])}.
+ * The resolution is chosen from the amount of primitives and the scene bounds so that the voxels
+ * are roughly cubic and hold a few primitives each.
+ * <p>
+ * Rays walk the voxels they pierce front to back with a 3D-DDA. A primitive spanning several voxels
+ * is tested once per ray thanks to mailboxing: every thread keeps the id of the last query that
+ * tested each primitive. The walk state and the mailbox are kept per thread, so the queries do not allocate.
+ */
+public class RegularGrid extends Intersectable {
+    /** Default amount of voxels per primitive */
+    public static final double DEFAULT_DENSITY = 4;
+    /** Maximal amount of voxels along an axis */
+    private static final int MAX_RESOLUTION = 128;
+
+    /** Grid bounds: min x, y, z followed by max x, y, z */
+    private final double[] bounds = new double[6];
+    /** Amount of voxels along each axis */
+    private final int[] resolution = new int[3];
+    /** Voxel size along each axis */
+    private final double[] cellSize = new double[3];
+    /** Inverse voxel size along each axis (0 for a flat axis) */
+    private final double[] invCellSize = new double[3];
+    /** Index of the first reference of every voxel, with a final end index */
+    private final int[] cellStart;
+    /** Primitive indices referenced by the voxels */
+    private final int[] cellPrimitives;
+    /** The primitives */
+    private final Intersectable[] primitives;
+
+    /**
+     * Per-thread walks, with their mailboxes: the last query id that tested each primitive.
+     * Keeps the traversal free of shared mutable state.
+     */
+    private final ThreadLocal<Walk> walks;
+
+    /**
+     * Builds a grid over bounded primitives with the {@link #DEFAULT_DENSITY default density}.
+     *
+     * @param primitives the primitives, each must have an {@link AABB} bounding box
+     */
+    RegularGrid(Intersectable[] primitives) {
+        this(primitives, DEFAULT_DENSITY);
+    }
+
+    /**
+     * Builds a grid over bounded primitives.
+     *
+     * @param primitives the primitives, each must have an {@link AABB} bounding box
+     * @param density    the target amount of voxels per primitive
+     */
+    RegularGrid(Intersectable[] primitives, double density) {
+        if (primitives.length == 0)
+            throw new IllegalArgumentException("Grid must hold at least one primitive");
+        if (density <= 0)
+            throw new IllegalArgumentException("Grid density must be positive");
+        this.primitives = primitives;
+        int n = primitives.length;
+
+        double[] boxes = new double[6 * n];
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[axis] = Double.POSITIVE_INFINITY;
+            bounds[3 + axis] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < n; i++) {
+            CBR cbr = primitives[i].getBoundingBox();
+            if (!(cbr instanceof AABB box))
+                throw new IllegalArgumentException("Grid primitives must have an AABB bounding box");
+            boxes[6 * i] = box.getX_min();
+            boxes[6 * i + 1] = box.getY_min();
+            boxes[6 * i + 2] = box.getZ_min();
+            boxes[6 * i + 3] = box.getX_max();
+            boxes[6 * i + 4] = box.getY_max();
+            boxes[6 * i + 5] = box.getZ_max();
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[axis] = Math.min(bounds[axis], boxes[6 * i + axis]);
+                bounds[3 + axis] = Math.max(bounds[3 + axis], boxes[6 * i + 3 + axis]);
+            }
+        }
+
+        chooseResolution(n, density);
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = bounds[3 + axis] - bounds[axis];
+            cellSize[axis] = extent / resolution[axis];
+            invCellSize[axis] = extent > 0 ? resolution[axis] / extent : 0;
+        }
+
+        // count the references of every voxel, then fill them in a second pass
+        int cellCount = resolution[0] * resolution[1] * resolution[2];
+        cellStart = new int[cellCount + 1];
+        int[] range = new int[6];
+        for (int i = 0; i < n; i++) {
+            cellRange(boxes, 6 * i, range);
+            for (int z = range[2]; z <= range[5]; z++)
+                for (int y = range[1]; y <= range[4]; y++)
+                    for (int x = range[0]; x <= range[3]; x++)
+                        cellStart[cellIndex(x, y, z) + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++)
+            cellStart[c + 1] += cellStart[c];
+
+        cellPrimitives = new int[cellStart[cellCount]];
+        int[] fill = new int[cellCount];
+        for (int i = 0; i < n; i++) {
+            cellRange(boxes, 6 * i, range);
+            for (int z = range[2]; z <= range[5]; z++)
+                for (int y = range[1]; y <= range[4]; y++)
+                    for (int x = range[0]; x <= range[3]; x++) {
+                        int c = cellIndex(x, y, z);
+                        cellPrimitives[cellStart[c] + fill[c]++] = i;
+                    }
+        }
+
+        walks = ThreadLocal.withInitial(() -> new Walk(n));
+        setBoundingBox(createBoundingBoxHelper());
+    }
+
+    /**
+     * Chooses the amount of voxels along each axis, proportional to the extent of the bounds,
+     * so that the grid holds about {@code density * n} voxels. Flat axes get a single voxel.
+     *
+     * @param n       the amount of primitives
+     * @param density the target amount of voxels per primitive
+     */
+    private void chooseResolution(int n, double density) {
+        int dimensions = 0;
+        double measure = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = bounds[3 + axis] - bounds[axis];
+            if (extent > 0) {
+                dimensions++;
+                measure *= extent;
+            }
+        }
+        double cellsPerUnit = dimensions == 0 ? 0 : Math.pow(density * n / measure, 1.0 / dimensions);
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = bounds[3 + axis] - bounds[axis];
+            int cells = (int) Math.round(extent * cellsPerUnit);
+            resolution[axis] = Math.max(1, Math.min(MAX_RESOLUTION, cells));
+        }
+    }
+
+    /**
+     * Returns the amount of voxels along an axis.
+     *
+     * @param axis the axis (0 = x, 1 = y, 2 = z)
+     * @return amount of voxels
+     */
+    public int getResolution(int axis) {
+        return resolution[axis];
+    }
+
+    /**
+     * Returns the total amount of primitive references held by the voxels.
+     *
+     * @return amount of references
+     */
+    public int getReferenceCount() {
+        return cellPrimitives.length;
+    }
+
+    /**
+     * Returns the primitives of the grid.
+     *
+     * @return the primitives array (not a copy)
+     */
+    Intersectable[] getPrimitives() {
+        return primitives;
+    }
+
+    private int cellIndex(int x, int y, int z) {
+        return (z * resolution[1] + y) * resolution[0] + x;
+    }
+
+    /**
+     * Voxel coordinate of a position along an axis, clamped to the grid.
+     */
+    private int cellCoordinate(double position, int axis) {
+        int cell = (int) ((position - bounds[axis]) * invCellSize[axis]);
+        return cell < 0 ? 0 : Math.min(cell, resolution[axis] - 1);
+    }
+
+    /**
+     * Finds the range of voxels overlapped by a box.
+     *
+     * @param boxes  box bounds array
+     * @param offset offset of the box in the array
+     * @param range  receives the min x, y, z followed by the max x, y, z voxel coordinates
+     */
+    private void cellRange(double[] boxes, int offset, int[] range) {
+        for (int axis = 0; axis < 3; axis++) {
+            range[axis] = cellCoordinate(boxes[offset + axis], axis);
+            range[3 + axis] = cellCoordinate(boxes[offset + 3 + axis], axis);
+        }
+    }
+
+    @Override
+    protected CBR createBoundingBoxHelper() {
+        return new AABB(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+    }
+
+    /**
+     * State of a 3D-DDA walk along a ray: the current voxel, the distance at which the ray
+     * leaves it along each axis, and the step between voxel borders along each axis.
+     * A grid is never queried again while its own query runs, so each thread reuses a single walk.
+     */
+    private final class Walk {
+        private final int[] cell = new int[3];
+        private final int[] step = new int[3];
+        private final double[] tMax = new double[3];
+        private final double[] tDelta = new double[3];
+        /** Distance at which the ray leaves the grid */
+        private double end;
+        /** The primitives tested by the query of the walk */
+        private final Mailbox mailbox;
+
+        /**
+         * Constructs a walk of a thread.
+         *
+         * @param size amount of primitives
+         */
+        private Walk(int size) {
+            mailbox = new Mailbox(size);
+        }
+
+        /**
+         * Starts the walk at the voxel where the ray enters the grid.
+         *
+         * @param ray         the ray
+         * @param maxDistance the maximum distance from the ray origin to consider
+         * @return false if the ray misses the grid within the distance
+         */
+        private boolean start(Ray ray, double maxDistance) {
+            Double3 origin = ray.getHead().get_xyz();
+            Double3 dir = ray.getDirection().get_xyz();
+            double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+            double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+            double entry = AABB.entryDistance(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5],
+                    ox, oy, oz, ix, iy, iz, maxDistance);
+            if (entry == Double.POSITIVE_INFINITY) return false;
+            end = AABB.exitDistance(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5],
+                    ox, oy, oz, ix, iy, iz, maxDistance);
+            int signs = ray.getSigns();
+            startAxis(0, ox, dir.d1(), ix, (signs & 1) != 0, entry);
+            startAxis(1, oy, dir.d2(), iy, (signs & 2) != 0, entry);
+            startAxis(2, oz, dir.d3(), iz, (signs & 4) != 0, entry);
+            return true;
+        }
+
+        /**
+         * Starts the walk along an axis.
+         *
+         * @param axis     the axis
+         * @param o        the ray origin coordinate along the axis
+         * @param d        the ray direction component along the axis
+         * @param inverse  the inverse ray direction component along the axis (see {@link Ray#getInverseX()})
+         * @param negative whether the ray direction is negative along the axis (see {@link Ray#getSigns()})
+         * @param entry    the entry distance of the ray into the grid
+         */
+        private void startAxis(int axis, double o, double d, double inverse, boolean negative, double entry) {
+            cell[axis] = cellCoordinate(o + d * entry, axis);
+            if (Double.isInfinite(inverse)) {
+                step[axis] = 0;
+                tMax[axis] = Double.POSITIVE_INFINITY;
+                tDelta[axis] = Double.POSITIVE_INFINITY;
+            } else {
+                step[axis] = negative ? -1 : 1;
+                double border = bounds[axis] + (cell[axis] + (negative ? 0 : 1)) * cellSize[axis];
+                tMax[axis] = (border - o) * inverse;
+                tDelta[axis] = cellSize[axis] * Math.abs(inverse);
+            }
+        }
+
+        /**
+         * Checks whether the voxels beyond the current one may still hold a hit within a distance.
+         *
+         * @param maxDistance the maximum distance from the ray origin to consider
+         * @return false if the ray leaves the current voxel beyond the distance, or leaves the grid there
+         */
+        private boolean goesOn(double maxDistance) {
+            double exit = exit();
+            return exit <= maxDistance && exit < end;
+        }
+
+        /**
+         * Returns the distance at which the ray leaves the current voxel.
+         *
+         * @return the exit distance
+         */
+        private double exit() {
+            return Math.min(tMax[0], Math.min(tMax[1], tMax[2]));
+        }
+
+        /**
+         * Steps into the next voxel along the ray.
+         *
+         * @return false if the ray has left the grid
+         */
+        private boolean advance() {
+            int axis = tMax[0] < tMax[1]
+                    ? (tMax[0] < tMax[2] ? 0 : 2)
+                    : (tMax[1] < tMax[2] ? 1 : 2);
+            if (step[axis] == 0) return false;
+            cell[axis] += step[axis];
+            if (cell[axis] < 0 || cell[axis] >= resolution[axis]) return false;
+            tMax[axis] += tDelta[axis];
+            return true;
+        }
+
+        private int index() {
+            return cellIndex(cell[0], cell[1], cell[2]);
+        }
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Walk walk = walks.get();
+        if (!walk.start(ray, maxDistance)) return null;
+
+        Mailbox mailbox = walk.mailbox;
+        int id = mailbox.next();
+        List<Intersection> intersections = null;
+        do {
+            int c = walk.index();
+            for (int r = cellStart[c]; r < cellStart[c + 1]; r++) {
+                int p = cellPrimitives[r];
+                if (!mailbox.mark(p, id)) continue;
+                List<Intersection> hits = primitives[p].calculateIntersections(ray, maxDistance);
+                if (hits != null) {
+                    if (intersections == null) intersections = new ArrayList<>();
+                    intersections.addAll(hits);
+                }
+            }
+        } while (walk.goesOn(maxDistance) && walk.advance());
+        return intersections;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Walk walk = walks.get();
+        if (!walk.start(ray, maxDistance)) return ktr;
+
+        Mailbox mailbox = walk.mailbox;
+        int id = mailbox.next();
+        do {
+            int c = walk.index();
+            for (int r = cellStart[c]; r < cellStart[c + 1]; r++) {
+                int p = cellPrimitives[r];
+                if (!mailbox.mark(p, id)) continue;
+                ktr = primitives[p].calculateTransparency(ray, maxDistance, ktr, minK);
+                if (ktr.lowerThan(minK)) return ktr;
+            }
+        } while (walk.goesOn(maxDistance) && walk.advance());
+        return ktr;
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        Walk walk = walks.get();
+        if (!walk.start(ray, hit.distance)) return false;
+
+        Mailbox mailbox = walk.mailbox;
+        int id = mailbox.next();
+        boolean found = false;
+        do {
+            int c = walk.index();
+            for (int r = cellStart[c]; r < cellStart[c + 1]; r++) {
+                int p = cellPrimitives[r];
+                if (!mailbox.mark(p, id)) continue;
+                if (primitives[p].calculateClosestHit(ray, hit))
+                    found = true;
+            }
+            // a hit inside the current voxel cannot be beaten by the voxels beyond it
+        } while (walk.goesOn(hit.distance) && walk.advance());
+        return found;
+    }
+}
@@ -45,7 +45,9 @@ public class Sphere extends RadialGeometry {
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
         // Special case: the ray starts at the center of the sphere
         if (center.equals(ray.getHead())) {
-            return List.of(new Intersection(this, ray.getPoint(radius)));
+            return alignZero(radius - maxDistance) <= 0
+                    ? List.of(new Intersection(this, ray.getPoint(radius), radius))
+                    : null;
         }
 
         Vector u = center.subtract(ray.getHead());
@@ -59,31 +61,54 @@ public class Sphere extends RadialGeometry {
         }
 
         double th = Math.sqrt(radiusSquared - dSquared);
-        double t1 = tm - th;
+        double t1 = tm - th; // t1 < t2 as th > 0
         double t2 = tm + th;
 
-        // Calculate potential intersection points (if they are in front of the ray)
-        Point p1 = t1 > 0 && alignZero(t1 - maxDistance) <= 0 ? ray.getPoint(t1) : null;
-        Point p2 = t2 > 0 && alignZero(t2 - maxDistance) <= 0 ? ray.getPoint(t2) : null;
-
-        // Return the valid intersections (ignoring those behind the ray's origin or at its head)
-        if (p1 != null && p2 != null)
-            return t1 < t2 ? List.of(
-                    new Intersection(this, p1),
-                    new Intersection(this, p2)
-            ) :
-                    List.of(
-                            new Intersection(this, p2),
-                            new Intersection(this, p1)
-                    );
-        if (p1 != null)
-            return List.of(new Intersection(this, p1));
-        if (p2 != null)
-            return List.of(new Intersection(this, p2));
+        // Keep only the intersections in front of the ray and within the distance
+        boolean valid1 = t1 > 0 && alignZero(t1 - maxDistance) <= 0;
+        boolean valid2 = t2 > 0 && alignZero(t2 - maxDistance) <= 0;
+
+        if (valid1 && valid2)
+            return List.of(
+                    new Intersection(this, ray.getPoint(t1), t1),
+                    new Intersection(this, ray.getPoint(t2), t2)
+            );
+        if (valid1)
+            return List.of(new Intersection(this, ray.getPoint(t1), t1));
+        if (valid2)
+            return List.of(new Intersection(this, ray.getPoint(t2), t2));
 
         return null;
     }
 
+    /**
+     * Finds the closest hit of the ray with the sphere - the nearer of the two roots
+     * that lies in front of the ray head and within the distance. No intersection is built.
+     *
+     * @param ray The ray to test for intersection with the sphere.
+     * @param hit The closest hit so far, whose distance limits the search
+     * @return true if a closer hit was found
+     */
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double maxDistance = hit.distance;
+        if (center.equals(ray.getHead()))
+            return alignZero(radius - maxDistance) <= 0 && hit.set(this, radius);
+
+        Vector u = center.subtract(ray.getHead());
+        double tm = alignZero(ray.getDirection().dotProduct(u));
+        double dSquared = u.lengthSquared() - tm * tm;
+        double radiusSquared = radius * radius;
+        if (dSquared >= radiusSquared)
+            return false;
+
+        double th = Math.sqrt(radiusSquared - dSquared);
+        double t = tm - th;
+        if (t <= 0)
+            t = tm + th;
+        return t > 0 && alignZero(t - maxDistance) <= 0 && hit.set(this, t);
+    }
+
     @Override
     protected AABB createBoundingBoxHelper() {
         double x = center.get_xyz().d1();
@@ -0,0 +1,64 @@
+package geometries;
+
+/**
+ * Traversal stack of a thread for an acceleration structure: the nodes still to visit and their
+ * entry distances, so that the queries of a structure do not allocate their stacks.
+ * A structure is never queried again while its own query runs (an instance queries its object,
+ * which is another structure), so each structure keeps a single stack per thread.
+ */
+final class TraversalStack {
+    /** The nodes still to visit */
+    final int[] nodes;
+    /** Entry distance of every node still to visit */
+    final double[] entries;
+    /** The child slots of the visited node hit by the ray, ordered front to back, for wide nodes */
+    final int[] hitSlots;
+    /** Entry distance of every hit child slot of the visited node, for wide nodes */
+    final double[] hitEntries;
+    /** Rays of a packet still hitting every node to visit - created by the first packet of the thread */
+    long[] masks;
+    /** Ray origins of a packet, by coordinate - created by the first packet of the thread */
+    double[] ox, oy, oz;
+    /** Inverse ray directions of a packet, by coordinate - created by the first packet of the thread */
+    double[] ix, iy, iz;
+
+    /**
+     * Constructs a stack for a binary structure.
+     *
+     * @param size the depth of the structure
+     */
+    TraversalStack(int size) {
+        this(size, 0);
+    }
+
+    /**
+     * Constructs a stack for a structure of wide nodes.
+     *
+     * @param size  the amount of nodes the structure may have to visit later
+     * @param width the amount of child slots of a node
+     */
+    TraversalStack(int size, int width) {
+        nodes = new int[size];
+        entries = new double[size];
+        hitSlots = new int[width];
+        hitEntries = new double[width];
+    }
+
+    /**
+     * Creates the packet data on the first packet traversed by the thread.
+     *
+     * @return this stack
+     */
+    TraversalStack preparePackets() {
+        if (masks == null) {
+            masks = new long[nodes.length];
+            ox = new double[Intersectable.MAX_PACKET_SIZE];
+            oy = new double[Intersectable.MAX_PACKET_SIZE];
+            oz = new double[Intersectable.MAX_PACKET_SIZE];
+            ix = new double[Intersectable.MAX_PACKET_SIZE];
+            iy = new double[Intersectable.MAX_PACKET_SIZE];
+            iz = new double[Intersectable.MAX_PACKET_SIZE];
+        }
+        return this;
+    }
+}
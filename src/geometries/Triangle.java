@@ -1,18 +1,25 @@
 package geometries;
 
+import primitives.Double3;
 import primitives.Point;
 import primitives.Ray;
-import primitives.Vector;
 
 import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Triangle class represents a triangle in 3D Cartesian coordinate system.
  * It inherits from Polygon since a triangle is a polygon with 3 vertices.
  */
 public class Triangle extends Polygon {
+    /** Coordinates of the first vertex */
+    private final double p0x, p0y, p0z;
+    /** Edge from the first to the second vertex */
+    private final double e1x, e1y, e1z;
+    /** Edge from the first to the third vertex */
+    private final double e2x, e2y, e2z;
 
     /**
      * Constructs a Triangle with three given vertices.
@@ -22,56 +29,86 @@ public class Triangle extends Polygon {
      * @param p3 Third vertex of the triangle
      */
     public Triangle(Point p1, Point p2, Point p3) {
-        super(p1, p2, p3);
+        super(false, p1, p2, p3);
+        Double3 a = p1.get_xyz(), b = p2.get_xyz(), c = p3.get_xyz();
+        p0x = a.d1();
+        p0y = a.d2();
+        p0z = a.d3();
+        e1x = b.d1() - p0x;
+        e1y = b.d2() - p0y;
+        e1z = b.d3() - p0z;
+        e2x = c.d1() - p0x;
+        e2y = c.d2() - p0y;
+        e2z = c.d3() - p0z;
     }
 
-    @Override
-    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        // First find intersection with the plane
-        var intersections = plane.findIntersections(ray);
-        if (intersections == null) return null;
-
-        Point p = intersections.getFirst();
+    /**
+     * Computes the distance of a ray's intersection with a triangle (Möller–Trumbore),
+     * on primitive coordinates and without allocations. The barycentric coordinates u, v of the
+     * point are computed on the way and must both be positive with a sum below 1, so points on
+     * the edges and vertices are not intersections.
+     *
+     * @param ox          ray origin x
+     * @param oy          ray origin y
+     * @param oz          ray origin z
+     * @param dx          ray direction x
+     * @param dy          ray direction y
+     * @param dz          ray direction z
+     * @param p0x         first vertex x
+     * @param p0y         first vertex y
+     * @param p0z         first vertex z
+     * @param e1x         edge from the first to the second vertex, x
+     * @param e1y         edge from the first to the second vertex, y
+     * @param e1z         edge from the first to the second vertex, z
+     * @param e2x         edge from the first to the third vertex, x
+     * @param e2y         edge from the first to the third vertex, y
+     * @param e2z         edge from the first to the third vertex, z
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the distance of the intersection, or {@link Double#POSITIVE_INFINITY} if there is none
+     */
+    static double intersect(double ox, double oy, double oz, double dx, double dy, double dz,
+                            double p0x, double p0y, double p0z, double e1x, double e1y, double e1z,
+                            double e2x, double e2y, double e2z, double maxDistance) {
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (isZero(det)) return Double.POSITIVE_INFINITY; // parallel to the triangle's plane
+        double invDet = 1 / det;
 
-        // Check distance constraint
-        if (alignZero(p.distance(ray.getHead()) - maxDistance) > 0) {
-            return null;
-        }
+        double tx = ox - p0x, ty = oy - p0y, tz = oz - p0z;
+        double u = (tx * px + ty * py + tz * pz) * invDet;
+        if (alignZero(u) <= 0 || alignZero(u - 1) >= 0) return Double.POSITIVE_INFINITY;
 
-        // Use barycentric coordinates for robust inside/outside test
-        Point p0 = vertices.get(0);
-        Point p1 = vertices.get(1);
-        Point p2 = vertices.get(2);
-        if (p.equals(p0) || p.equals(p1) || p.equals(p2))
-            return null;
-        // Calculate triangle edges
-        Vector edge1 = p1.subtract(p0);
-        Vector edge2 = p2.subtract(p0);
-        Vector pointVec = p.subtract(p0);
+        double qx = ty * e1z - tz * e1y, qy = tz * e1x - tx * e1z, qz = tx * e1y - ty * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) * invDet;
+        if (alignZero(v) <= 0 || alignZero(u + v - 1) >= 0) return Double.POSITIVE_INFINITY;
 
-        try {
-            // Calculate barycentric coordinates
-            double dot00 = edge2.dotProduct(edge2);
-            double dot01 = edge2.dotProduct(edge1);
-            double dot02 = edge2.dotProduct(pointVec);
-            double dot11 = edge1.dotProduct(edge1);
-            double dot12 = edge1.dotProduct(pointVec);
+        double t = (e2x * qx + e2y * qy + e2z * qz) * invDet;
+        return alignZero(t) <= 0 || alignZero(t - maxDistance) > 0 ? Double.POSITIVE_INFINITY : t;
+    }
 
-            double invDenom = 1.0 / (dot00 * dot11 - dot01 * dot01);
-            double u = (dot11 * dot02 - dot01 * dot12) * invDenom;
-            double v = (dot00 * dot12 - dot01 * dot02) * invDenom;
+    /**
+     * Computes the distance of a ray's intersection with the triangle.
+     *
+     * @param ray         the ray
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the distance of the intersection, or {@link Double#POSITIVE_INFINITY} if there is none
+     */
+    private double intersect(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        Double3 dir = ray.getDirection().get_xyz();
+        return intersect(origin.d1(), origin.d2(), origin.d3(), dir.d1(), dir.d2(), dir.d3(),
+                p0x, p0y, p0z, e1x, e1y, e1z, e2x, e2y, e2z, maxDistance);
+    }
 
-            // Check if point is inside triangle
-            // Use small epsilon to exclude edge points and avoid artifacts
-            final double EPSILON = 1e-10;
-            if (u > EPSILON && v > EPSILON && (u + v) < (1.0 - EPSILON)) {
-                return List.of(new Intersection(this, p));
-            }
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        double t = intersect(ray, maxDistance);
+        return t == Double.POSITIVE_INFINITY ? null : List.of(new Intersection(this, ray.getPoint(t), t));
+    }
 
-        } catch (Exception e) {
-            // Handle degenerate cases
-            return null;
-        }
-        return null;
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double t = intersect(ray, hit.distance);
+        return t != Double.POSITIVE_INFINITY && hit.set(this, t);
     }
 }
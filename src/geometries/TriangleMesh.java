@@ -0,0 +1,361 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static primitives.Util.isZero;
+
+/**
+ * A triangle mesh: triangles sharing their vertices, stored in primitive arrays instead of
+ * a {@link Triangle} object (with its vertex list and plane) per face.
+ * <p>
+ * The vertex positions are kept in one array, 3 coordinates per vertex, and the faces in an
+ * index array, 3 vertex indices per face. Per-face data (edges, normal) is computed on demand.
+ * The mesh is a single geometry for the scene hierarchy, and holds its own hierarchy over its
+ * faces in the flat layout of {@link LinearBVH}, with the faces reordered to leaf order.
+ * <p>
+ * Like {@link Triangle}, a face is not intersected on its edges and vertices.
+ * The intersections refer to a lightweight view of the intersected face, which shares the
+ * mesh material and emission.
+ */
+public class TriangleMesh extends Geometry {
+    /** Vertex coordinates, 3 values per vertex */
+    private final double[] positions;
+    /** Vertex indices, 3 per face, ordered so that the faces of each leaf are contiguous */
+    private final int[] indices;
+    /** Node bounds of the face hierarchy, 6 values per node */
+    private final double[] bounds;
+    /** Node offsets and counts of the face hierarchy, 2 values per node */
+    private final int[] nodes;
+    /** Size of the traversal stack - the depth of the hierarchy */
+    private final int stackSize;
+    /** Per-thread traversal stacks of the face hierarchy */
+    private final ThreadLocal<TraversalStack> stacks;
+
+    /**
+     * Constructs a mesh from vertex points and face indices.
+     *
+     * @param vertices the vertices
+     * @param indices  the vertex indices of the faces, 3 per face
+     * @throws IllegalArgumentException if there are no faces or an index is out of range
+     */
+    public TriangleMesh(Point[] vertices, int[] indices) {
+        this(toPositions(vertices), indices);
+    }
+
+    /**
+     * Constructs a mesh from vertex coordinates and face indices.
+     *
+     * @param positions the vertex coordinates, 3 per vertex
+     * @param indices   the vertex indices of the faces, 3 per face
+     * @throws IllegalArgumentException if there are no faces, an index is out of range
+     *                                  or the coordinates are not given by triplets
+     */
+    public TriangleMesh(double[] positions, int[] indices) {
+        if (positions.length % 3 != 0)
+            throw new IllegalArgumentException("Vertex coordinates must be given by triplets");
+        if (indices.length == 0 || indices.length % 3 != 0)
+            throw new IllegalArgumentException("A mesh must have at least one face, given by 3 vertex indices");
+        int vertexCount = positions.length / 3;
+        for (int index : indices)
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("Vertex index " + index + " is out of range");
+
+        int faceCount = indices.length / 3;
+        double[] boxes = new double[6 * faceCount];
+        for (int face = 0; face < faceCount; face++) {
+            BVHBuilder.emptyBounds(boxes, 6 * face);
+            for (int corner = 0; corner < 3; corner++) {
+                int v = 3 * indices[3 * face + corner];
+                for (int axis = 0; axis < 3; axis++) {
+                    boxes[6 * face + axis] = Math.min(boxes[6 * face + axis], positions[v + axis]);
+                    boxes[6 * face + 3 + axis] = Math.max(boxes[6 * face + 3 + axis], positions[v + axis]);
+                }
+            }
+        }
+        int[] order = new int[faceCount];
+        BVHBuilder.Node root = new BVHBuilder().buildTree(boxes, order);
+
+        this.positions = positions.clone();
+        this.indices = new int[indices.length];
+        for (int face = 0; face < faceCount; face++)
+            System.arraycopy(indices, 3 * order[face], this.indices, 3 * face, 3);
+        int nodeCount = LinearBVH.countNodes(root);
+        this.bounds = new double[6 * nodeCount];
+        this.nodes = new int[2 * nodeCount];
+        this.stackSize = LinearBVH.flatten(root, bounds, nodes, 0, 0)[1] + 1;
+        this.stacks = ThreadLocal.withInitial(() -> new TraversalStack(stackSize));
+    }
+
+    /**
+     * Converts vertex points to a coordinates array.
+     *
+     * @param vertices the vertices
+     * @return the coordinates, 3 per vertex
+     */
+    private static double[] toPositions(Point[] vertices) {
+        double[] positions = new double[3 * vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            Double3 xyz = vertices[i].get_xyz();
+            positions[3 * i] = xyz.d1();
+            positions[3 * i + 1] = xyz.d2();
+            positions[3 * i + 2] = xyz.d3();
+        }
+        return positions;
+    }
+
+    /**
+     * @return amount of faces
+     */
+    public int getFaceCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * @return amount of vertices
+     */
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    /**
+     * Computes the unit normal of a face, by the order of its vertices.
+     *
+     * @param face the face index (in the mesh's face order)
+     * @return the normal, or {@code null} for a degenerate face
+     */
+    private Vector faceNormal(int face) {
+        int i0 = 3 * indices[3 * face], i1 = 3 * indices[3 * face + 1], i2 = 3 * indices[3 * face + 2];
+        double e1x = positions[i1] - positions[i0], e1y = positions[i1 + 1] - positions[i0 + 1];
+        double e1z = positions[i1 + 2] - positions[i0 + 2];
+        double e2x = positions[i2] - positions[i0], e2y = positions[i2 + 1] - positions[i0 + 1];
+        double e2z = positions[i2 + 2] - positions[i0 + 2];
+        double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        if (isZero(nx) && isZero(ny) && isZero(nz)) return null;
+        return new Vector(nx, ny, nz).normalize();
+    }
+
+    /**
+     * Intersects a ray with a face, by the kernel of {@link Triangle}.
+     *
+     * @param face        the face index
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the distance of the intersection, or {@link Double#POSITIVE_INFINITY} if there is none
+     */
+    private double intersectFace(int face, double ox, double oy, double oz, double dx, double dy, double dz,
+                                 double maxDistance) {
+        int i0 = 3 * indices[3 * face], i1 = 3 * indices[3 * face + 1], i2 = 3 * indices[3 * face + 2];
+        double p0x = positions[i0], p0y = positions[i0 + 1], p0z = positions[i0 + 2];
+        return Triangle.intersect(ox, oy, oz, dx, dy, dz, p0x, p0y, p0z,
+                positions[i1] - p0x, positions[i1 + 1] - p0y, positions[i1 + 2] - p0z,
+                positions[i2] - p0x, positions[i2 + 1] - p0y, positions[i2 + 2] - p0z, maxDistance);
+    }
+
+    /**
+     * Entry distance of a ray into the box of a node of the face hierarchy.
+     *
+     * @return the entry distance, or {@link Double#POSITIVE_INFINITY} if the box is missed
+     */
+    private double entryDistance(int node, double ox, double oy, double oz,
+                                 double ix, double iy, double iz, double maxDistance) {
+        int b = 6 * node;
+        return AABB.entryDistance(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5],
+                ox, oy, oz, ix, iy, iz, maxDistance);
+    }
+
+    /**
+     * Finds the face containing a point (the mesh normal depends on the face).
+     * <p>
+     * This is a debugging path only: it scans all the faces. The normal of an intersection
+     * must be taken from its geometry - the intersected face - which knows its face at once.
+     */
+    @Override
+    public Vector getNormal(Point p) {
+        Double3 xyz = p.get_xyz();
+        Vector best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int face = 0; face < getFaceCount(); face++) {
+            Vector normal = faceNormal(face);
+            if (normal == null) continue;
+            Double3 n = normal.get_xyz();
+            int i0 = 3 * indices[3 * face];
+            double distance = Math.abs((xyz.d1() - positions[i0]) * n.d1() + (xyz.d2() - positions[i0 + 1]) * n.d2()
+                    + (xyz.d3() - positions[i0 + 2]) * n.d3());
+            // the closest face plane whose face contains the projection of the point
+            if (distance < bestDistance && intersectFace(face, xyz.d1() + n.d1(), xyz.d2() + n.d2(),
+                    xyz.d3() + n.d3(), -n.d1(), -n.d2(), -n.d3(), Double.POSITIVE_INFINITY) != Double.POSITIVE_INFINITY) {
+                best = normal;
+                bestDistance = distance;
+            }
+        }
+        if (best == null) throw new IllegalArgumentException("The point is not on the mesh");
+        return best;
+    }
+
+    @Override
+    protected CBR createBoundingBoxHelper() {
+        return new AABB(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        Double3 dir = ray.getDirection().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double dx = dir.d1(), dy = dir.d2(), dz = dir.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        List<Intersection> intersections = null;
+        int[] stack = stacks.get().nodes;
+        int top = 0;
+        int node = 0;
+        if (entryDistance(0, ox, oy, oz, ix, iy, iz, maxDistance) == Double.POSITIVE_INFINITY) return null;
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (int face = offset; face < offset + count; face++) {
+                    double t = intersectFace(face, ox, oy, oz, dx, dy, dz, maxDistance);
+                    if (t != Double.POSITIVE_INFINITY) {
+                        if (intersections == null) intersections = new ArrayList<>();
+                        intersections.add(new Intersection(new Face(face), ray.getPoint(t), t));
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes[2 * node];
+                boolean hitLeft = entryDistance(left, ox, oy, oz, ix, iy, iz, maxDistance) != Double.POSITIVE_INFINITY;
+                boolean hitRight = entryDistance(right, ox, oy, oz, ix, iy, iz, maxDistance) != Double.POSITIVE_INFINITY;
+                if (hitLeft) {
+                    if (hitRight) stack[top++] = right;
+                    node = left;
+                    continue;
+                }
+                if (hitRight) {
+                    node = right;
+                    continue;
+                }
+            }
+            if (top == 0) return intersections;
+            node = stack[--top];
+        }
+    }
+
+    /**
+     * Visits the nearer child first and skips subtrees entered beyond the closest face found,
+     * recording only the distance and the index of the closest face.
+     */
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double maxDistance = hit.distance;
+        Double3 origin = ray.getHead().get_xyz();
+        Double3 dir = ray.getDirection().get_xyz();
+        double ox = origin.d1(), oy = origin.d2(), oz = origin.d3();
+        double dx = dir.d1(), dy = dir.d2(), dz = dir.d3();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+
+        int closest = -1;
+        TraversalStack traversal = stacks.get();
+        int[] stack = traversal.nodes;
+        double[] stackEntries = traversal.entries;
+        int top = 0;
+        int node = 0;
+        if (entryDistance(0, ox, oy, oz, ix, iy, iz, maxDistance) == Double.POSITIVE_INFINITY) return false;
+        while (true) {
+            int count = nodes[2 * node + 1];
+            if (count > 0) {
+                int offset = nodes[2 * node];
+                for (int face = offset; face < offset + count; face++) {
+                    double t = intersectFace(face, ox, oy, oz, dx, dy, dz, maxDistance);
+                    if (t != Double.POSITIVE_INFINITY) {
+                        closest = face;
+                        maxDistance = t;
+                    }
+                }
+            } else {
+                int near = node + 1;
+                int far = nodes[2 * node];
+                double tNear = entryDistance(near, ox, oy, oz, ix, iy, iz, maxDistance);
+                double tFar = entryDistance(far, ox, oy, oz, ix, iy, iz, maxDistance);
+                if (tFar < tNear) {
+                    int temp = near;
+                    near = far;
+                    far = temp;
+                    double t = tNear;
+                    tNear = tFar;
+                    tFar = t;
+                }
+                if (tNear != Double.POSITIVE_INFINITY) {
+                    if (tFar != Double.POSITIVE_INFINITY) {
+                        stack[top] = far;
+                        stackEntries[top++] = tFar;
+                    }
+                    node = near;
+                    continue;
+                }
+            }
+            // pop the next node that may still hold a closer face
+            do {
+                if (top == 0) {
+                    if (closest < 0) return false;
+                    hit.set(this, maxDistance);
+                    hit.index = closest;
+                    return true;
+                }
+                --top;
+            } while (stackEntries[top] > maxDistance);
+            node = stack[top];
+        }
+    }
+
+    /**
+     * Creates the intersection of the recorded face.
+     */
+    @Override
+    protected Intersection createIntersection(Ray ray, Hit hit) {
+        return new Intersection(new Face(hit.index), ray.getPoint(hit.distance), hit.distance);
+    }
+
+    /**
+     * The view of an intersected face, sharing the mesh material and emission.
+     */
+    private final class Face extends Geometry {
+        /** The face index */
+        private final int face;
+
+        private Face(int face) {
+            this.face = face;
+        }
+
+        @Override
+        public Color getEmission() {
+            return TriangleMesh.this.getEmission();
+        }
+
+        @Override
+        public Material getMaterial() {
+            return TriangleMesh.this.getMaterial();
+        }
+
+        @Override
+        public Vector getNormal(Point p) {
+            return faceNormal(face);
+        }
+
+        @Override
+        protected CBR createBoundingBoxHelper() {
+            return null; // the view is not placed in any hierarchy
+        }
+
+        @Override
+        protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+            Double3 origin = ray.getHead().get_xyz();
+            Double3 dir = ray.getDirection().get_xyz();
+            double t = intersectFace(face, origin.d1(), origin.d2(), origin.d3(), dir.d1(), dir.d2(), dir.d3(),
+                    maxDistance);
+            return t == Double.POSITIVE_INFINITY ? null : List.of(new Intersection(this, ray.getPoint(t), t));
+        }
+    }
+}
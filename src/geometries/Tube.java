@@ -2,6 +2,7 @@ package geometries;
 
 import primitives.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static primitives.Util.alignZero;
@@ -16,6 +17,15 @@ public class Tube extends RadialGeometry {
      * The central axis of the tube represented as a ray.
      */
     protected final Ray axis;
+    /** The axis head */
+    protected final double px, py, pz;
+    /**
+     * Orthonormal frame of the axis: u and v across it and w along it,
+     * in which the intersections are computed
+     */
+    protected final double ux, uy, uz, vx, vy, vz, wx, wy, wz;
+    /** Per-thread receiver of the intersection distances, large enough for the geometries of the family */
+    private static final ThreadLocal<double[]> DISTANCES = ThreadLocal.withInitial(() -> new double[4]);
 
     /**
      * Constructs a tube with the specified radius and axis.
@@ -26,6 +36,38 @@ public class Tube extends RadialGeometry {
     public Tube(double radius, Ray axis) {
         super(radius);
         this.axis = axis;
+
+        Double3 head = axis.getHead().get_xyz();
+        px = head.d1();
+        py = head.d2();
+        pz = head.d3();
+        Double3 w = axis.getDirection().get_xyz();
+        wx = w.d1();
+        wy = w.d2();
+        wz = w.d3();
+        // u is perpendicular to w and to the coordinate axis w is least aligned with
+        double ax = Math.abs(wx), ay = Math.abs(wy), az = Math.abs(wz);
+        double cx, cy, cz;
+        if (ax <= ay && ax <= az) {
+            cx = 0;
+            cy = -wz;
+            cz = wy;
+        } else if (ay <= az) {
+            cx = wz;
+            cy = 0;
+            cz = -wx;
+        } else {
+            cx = -wy;
+            cy = wx;
+            cz = 0;
+        }
+        double length = Math.sqrt(cx * cx + cy * cy + cz * cz);
+        ux = cx / length;
+        uy = cy / length;
+        uz = cz / length;
+        vx = wy * uz - wz * uy;
+        vy = wz * ux - wx * uz;
+        vz = wx * uy - wy * ux;
     }
 
     @Override
@@ -39,98 +81,74 @@ public class Tube extends RadialGeometry {
         return p.subtract(o).normalize();
     }
 
-    /**
-     * Helper method to check whether a given point lies on the tube's axis.
-     *
-     * @param p the point to check
-     * @return true if the point is on the axis, false otherwise
-     */
-    private boolean isPointOnTubeAxis(Point p) {
-        if (p.equals(axis.getHead())) {
-            return true;
-        }
-
-        try {
-            Vector v = p.subtract(axis.getHead());
-            return isZero(v.normalize().dotProduct(axis.getDirection().normalize()) - 1);
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
-    }
-
     @Override
     protected AABB createBoundingBoxHelper() {
         return null;
     }
 
-    @Override
-    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        Vector vAxis = axis.getDirection(); // Axis direction
-        Point p0 = axis.getHead();          // Axis origin
-        Point p = ray.getHead();            // Ray origin
-        Vector v = ray.getDirection();      // Ray direction
-
-        // Special case: ray starts at the axis origin and goes in axis direction
-        if (p.equals(p0) && isZero(v.normalize().dotProduct(vAxis.normalize()) - 1))
-            return null;
-
-        // Compute projection of ray direction perpendicular to the axis
-        double vDotVa = alignZero(v.dotProduct(vAxis));
-        Vector vPerp;
-        try {
-            vPerp = isZero(vDotVa) ? v : v.subtract(vAxis.scale(vDotVa));
-        } catch (IllegalArgumentException e) {
-            return null; // v is parallel to the axis
-        }
-
-        double a = vPerp.lengthSquared();
-
-        double b, c;
-
-        if (isPointOnTubeAxis(p)) {
-            b = 0;
-            c = -radius * radius;
-        } else {
-            Vector deltaP = p.subtract(p0);
-            double dpDotVa = deltaP.dotProduct(vAxis);
-            Vector dpPerp;
-            try {
-                dpPerp = isZero(dpDotVa) ? deltaP : deltaP.subtract(vAxis.scale(dpDotVa));
-            } catch (IllegalArgumentException e) {
-                dpPerp = deltaP;
-            }
-            b = 2 * vPerp.dotProduct(dpPerp);
-            c = dpPerp.lengthSquared() - radius * radius;
-        }
+    /**
+     * Solves for the distances of a ray's intersections with the tube surface, given the ray's
+     * coordinates across the axis, in the axis frame. Only the distances within {@code (0, maxDistance]}
+     * are kept, a double root (a tangent ray) counts once.
+     *
+     * @param ou          the ray origin along u, relative to the axis head
+     * @param ov          the ray origin along v, relative to the axis head
+     * @param du          the ray direction along u
+     * @param dv          the ray direction along v
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @param t           receives the distances, in ascending order
+     * @return amount of distances
+     */
+    protected final int intersectSurface(double ou, double ov, double du, double dv, double maxDistance,
+                                         double[] t) {
+        double a = du * du + dv * dv;
+        if (isZero(a)) return 0; // parallel to the axis
+        double b = 2 * (ou * du + ov * dv);
+        double c = ou * ou + ov * ov - radius * radius;
 
-        // Solve the quadratic equation: at^2 + bt + c = 0
         double discriminant = alignZero(b * b - 4 * a * c);
-        if (discriminant < 0) return null;
-
+        if (discriminant < 0) return 0;
         double sqrtDiscriminant = Math.sqrt(discriminant);
-        double t1 = alignZero((-b + sqrtDiscriminant) / (2 * a));
-        double t2 = alignZero((-b - sqrtDiscriminant) / (2 * a));
+        double t1 = alignZero((-b - sqrtDiscriminant) / (2 * a));
+        double t2 = alignZero((-b + sqrtDiscriminant) / (2 * a));
 
-        Point p1 = t1 > 0 && alignZero(t1 - maxDistance) <= 0 ? ray.getPoint(t1) : null;
-        Point p2 = t2 > 0 && alignZero(t2 - maxDistance) <= 0 ? ray.getPoint(t2) : null;
+        int n = 0;
+        if (t1 > 0 && alignZero(t1 - maxDistance) <= 0) t[n++] = t1;
+        if (t2 > 0 && alignZero(t2 - maxDistance) <= 0 && (n == 0 || alignZero(t2 - t1) != 0)) t[n++] = t2;
+        return n;
+    }
 
-        if (p1 != null && p2 != null) {
-            if (alignZero(t1 - t2) == 0)
-                return List.of(new Intersection(this, p1));
-            return t1 < t2 ? List.of(
-                    new Intersection(this, p1),
-                    new Intersection(this, p2)
-            ) :
-                    List.of(
-                            new Intersection(this, p2),
-                            new Intersection(this, p1));
-        }
+    /**
+     * Computes the distances of a ray's intersections with the geometry.
+     *
+     * @param ray         the ray
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @param t           receives the distances, in ascending order
+     * @return amount of distances
+     */
+    protected int intersect(Ray ray, double maxDistance, double[] t) {
+        Double3 o = ray.getHead().get_xyz();
+        Double3 d = ray.getDirection().get_xyz();
+        double x = o.d1() - px, y = o.d2() - py, z = o.d3() - pz;
+        return intersectSurface(x * ux + y * uy + z * uz, x * vx + y * vy + z * vz,
+                d.d1() * ux + d.d2() * uy + d.d3() * uz, d.d1() * vx + d.d2() * vy + d.d3() * vz, maxDistance, t);
+    }
 
-        if (p1 != null)
-            return List.of(new Intersection(this, p1));
-        if (p2 != null)
-            return List.of(new Intersection(this, p2));
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        double[] t = DISTANCES.get();
+        int n = intersect(ray, maxDistance, t);
+        if (n == 0) return null;
+        if (n == 1) return List.of(new Intersection(this, ray.getPoint(t[0]), t[0]));
+        List<Intersection> intersections = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            intersections.add(new Intersection(this, ray.getPoint(t[i]), t[i]));
+        return intersections;
+    }
 
-        return null;
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double[] t = DISTANCES.get();
+        return intersect(ray, hit.distance, t) != 0 && hit.set(this, t[0]);
     }
 }
@@ -1,6 +1,7 @@
 package lighting;
 
 import primitives.Color;
+import primitives.MutableVector;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
@@ -20,6 +21,11 @@ public class DirectionalLight extends Light implements LightSource {
         return direction.normalize();
     }
 
+    @Override
+    public MutableVector getL(Point p, MutableVector l) {
+        return l.set(direction).normalize();
+    }
+
     @Override
     public Color getIntensity(Point p) {
         return intensity;
@@ -1,6 +1,7 @@
 package lighting;
 
 import primitives.Color;
+import primitives.MutableVector;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
@@ -10,8 +11,33 @@ import java.util.List;
 public interface LightSource {
     Color getIntensity(Point p);
 
+    /**
+     * Computes the intensity of the light at a point whose light direction is already known,
+     * for the shading hot path. Lights whose intensity depends on the direction override it
+     * to use the given one instead of computing it again.
+     *
+     * @param p the point
+     * @param l the normalized direction of the light at the point, as computed by {@link #getL(Point, MutableVector)}
+     * @return the intensity
+     */
+    default Color getIntensity(Point p, MutableVector l) {
+        return getIntensity(p);
+    }
+
     Vector getL(Point p);
 
+    /**
+     * Computes the direction of the light at a point into a scratch vector, for the shading
+     * hot path. Lights override it to compute the direction without allocations.
+     *
+     * @param p the point
+     * @param l the scratch vector to receive the normalized direction
+     * @return the scratch vector
+     */
+    default MutableVector getL(Point p, MutableVector l) {
+        return l.set(getL(p)).normalize();
+    }
+
     double getDistance(Point point);
 
     List<Ray> generateRays(Point p0);
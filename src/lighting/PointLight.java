@@ -1,6 +1,7 @@
 package lighting;
 
 import primitives.Color;
+import primitives.MutableVector;
 import primitives.Point;
 import primitives.Vector;
 import renderer.blackboard.Blackboard;
@@ -92,6 +93,11 @@ public class PointLight extends Light implements LightSource {
         return p.subtract(position).normalize();
     }
 
+    @Override
+    public MutableVector getL(Point p, MutableVector l) {
+        return l.setDifference(p, position).normalize();
+    }
+
     @Override
     public Color getIntensity(Point p) {
         double distance = p.distance(position);
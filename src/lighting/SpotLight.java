@@ -1,6 +1,7 @@
 package lighting;
 
 import primitives.Color;
+import primitives.MutableVector;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
@@ -58,8 +59,13 @@ public class SpotLight extends PointLight{
 
     @Override
     public Color getIntensity(Point p) {
+        return getIntensity(p, getL(p, new MutableVector()));
+    }
+
+    @Override
+    public Color getIntensity(Point p, MutableVector l) {
         return super.getIntensity(p).scale(
-                max(0, pow(alignZero(direction.dotProduct(getL(p))), narrowBeam))
+                max(0, pow(alignZero(l.dotProduct(direction)), narrowBeam))
         );
     }
     @Override
@@ -1,5 +1,6 @@
 package primitives;
 
+import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
 
 /**
@@ -159,47 +160,129 @@ public class AABB extends CBR {
     }
 
     /**
-     * Checks whether the given ray intersects this AABB.
+     * Checks whether the line of the given ray intersects this AABB (in either direction of the head).
      *
      * @param ray The ray to check for intersection.
      * @return {@code true} if the ray intersects the bounding box; {@code false} otherwise.
      */
     @Override
     public boolean intersects(Ray ray) {
-        Double3 originXYZ = ray.getHead().get_xyz();
-        Double3 dirXYZ = ray.getDirection().get_xyz();
-
-        double tMin = Double.NEGATIVE_INFINITY;
-        double tMax = Double.POSITIVE_INFINITY;
-
-        double[] originArr = {originXYZ.d1(), originXYZ.d2(), originXYZ.d3()};
-        double[] dirArr = {dirXYZ.d1(), dirXYZ.d2(), dirXYZ.d3()};
-        double[] minArr = {x_min, y_min, z_min};
-        double[] maxArr = {x_max, y_max, z_max};
-
-        for (int i = 0; i < 3; i++) {
-            if (isZero(dirArr[i])) {
-                // Ray is parallel to slab. No hit if origin not within slab.
-                if (originArr[i] < minArr[i] || originArr[i] > maxArr[i]) {
-                    return false;
-                }
-            } else {
-                double t1 = (minArr[i] - originArr[i]) / dirArr[i];
-                double t2 = (maxArr[i] - originArr[i]) / dirArr[i];
-
-                double tEntry = Math.min(t1, t2);
-                double tExit = Math.max(t1, t2);
-
-                tMin = Math.max(tMin, tEntry);
-                tMax = Math.min(tMax, tExit);
-
-                if (tMin > tMax) {
-                    return false;
-                }
-            }
-        }
+        Double3 origin = ray.getHead().get_xyz();
+        return slabs(x_min, y_min, z_min, x_max, y_max, z_max, origin.d1(), origin.d2(), origin.d3(),
+                ray.getInverseX(), ray.getInverseY(), ray.getInverseZ(),
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true) != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculates the distance along the ray at which it enters this AABB, using the slab method.
+     * Unlike {@link #intersects(Ray)}, boxes lying behind the ray head or beyond
+     * {@code maxDistance} are reported as missed.
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the entry distance (0 if the ray head is inside the box),
+     * or {@link Double#POSITIVE_INFINITY} if the ray misses the box within {@code maxDistance}
+     */
+    @Override
+    public double entryDistance(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        return slabs(x_min, y_min, z_min, x_max, y_max, z_max, origin.d1(), origin.d2(), origin.d3(),
+                ray.getInverseX(), ray.getInverseY(), ray.getInverseZ(), 0, maxDistance, true);
+    }
+
+    /**
+     * Calculates the distance along the ray at which it leaves this AABB, using the slab method.
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the exit distance (capped by {@code maxDistance}),
+     * or {@link Double#NEGATIVE_INFINITY} if the ray misses the box within {@code maxDistance}
+     */
+    public double exitDistance(Ray ray, double maxDistance) {
+        Double3 origin = ray.getHead().get_xyz();
+        return slabs(x_min, y_min, z_min, x_max, y_max, z_max, origin.d1(), origin.d2(), origin.d3(),
+                ray.getInverseX(), ray.getInverseY(), ray.getInverseZ(), 0, maxDistance, false);
+    }
 
-        return true;
+    /**
+     * Slab test of a ray against box bounds given as primitive values, for acceleration
+     * structures that keep their boxes in flat arrays.
+     *
+     * @param minX        the minimum x-coordinate of the box
+     * @param minY        the minimum y-coordinate of the box
+     * @param minZ        the minimum z-coordinate of the box
+     * @param maxX        the maximum x-coordinate of the box
+     * @param maxY        the maximum y-coordinate of the box
+     * @param maxZ        the maximum z-coordinate of the box
+     * @param ox          ray head x-coordinate
+     * @param oy          ray head y-coordinate
+     * @param oz          ray head z-coordinate
+     * @param ix          inverse ray direction x-component (see {@link Ray#getInverseX()})
+     * @param iy          inverse ray direction y-component
+     * @param iz          inverse ray direction z-component
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the entry distance (0 if the ray head is inside the box),
+     * or {@link Double#POSITIVE_INFINITY} if the ray misses the box within {@code maxDistance}
+     */
+    public static double entryDistance(double minX, double minY, double minZ,
+                                       double maxX, double maxY, double maxZ,
+                                       double ox, double oy, double oz,
+                                       double ix, double iy, double iz,
+                                       double maxDistance) {
+        return slabs(minX, minY, minZ, maxX, maxY, maxZ, ox, oy, oz, ix, iy, iz, 0, maxDistance, true);
+    }
+
+    /**
+     * Slab test of a ray against box bounds given as primitive values, returning the exit distance
+     * (see {@link #entryDistance(double, double, double, double, double, double, double, double, double,
+     * double, double, double, double)} for the parameters).
+     *
+     * @return the exit distance (capped by {@code maxDistance}),
+     * or {@link Double#NEGATIVE_INFINITY} if the ray misses the box within {@code maxDistance}
+     */
+    public static double exitDistance(double minX, double minY, double minZ,
+                                      double maxX, double maxY, double maxZ,
+                                      double ox, double oy, double oz,
+                                      double ix, double iy, double iz,
+                                      double maxDistance) {
+        return slabs(minX, minY, minZ, maxX, maxY, maxZ, ox, oy, oz, ix, iy, iz, 0, maxDistance, false);
+    }
+
+    /**
+     * The slab test, without divisions or allocations. The sign of each inverse direction component
+     * picks the near and the far plane of its slab. Along an axis the ray is parallel to, the plane
+     * distances are infinite - or {@code NaN} for a head on the plane, which the comparisons ignore,
+     * so a head inside the closed slab passes it.
+     *
+     * @param tMin  the distance the ray starts at
+     * @param tMax  the distance the ray ends at
+     * @param entry whether to return the entry or the exit distance
+     * @return the entry or the exit distance, or {@link Double#POSITIVE_INFINITY} (entry) /
+     * {@link Double#NEGATIVE_INFINITY} (exit) if the box is missed
+     */
+    private static double slabs(double minX, double minY, double minZ,
+                                double maxX, double maxY, double maxZ,
+                                double ox, double oy, double oz,
+                                double ix, double iy, double iz,
+                                double tMin, double tMax, boolean entry) {
+        double near = tMin;
+        double far = tMax;
+        double t = ((ix < 0 ? maxX : minX) - ox) * ix;
+        if (t > near) near = t;
+        t = ((ix < 0 ? minX : maxX) - ox) * ix;
+        if (t < far) far = t;
+        t = ((iy < 0 ? maxY : minY) - oy) * iy;
+        if (t > near) near = t;
+        t = ((iy < 0 ? minY : maxY) - oy) * iy;
+        if (t < far) far = t;
+        t = ((iz < 0 ? maxZ : minZ) - oz) * iz;
+        if (t > near) near = t;
+        t = ((iz < 0 ? minZ : maxZ) - oz) * iz;
+        if (t < far) far = t;
+
+        if (alignZero(near - far) > 0)
+            return entry ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        return entry ? near : far;
     }
 
     /**
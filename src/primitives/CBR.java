@@ -5,6 +5,16 @@ public abstract class CBR {
 
     public abstract boolean intersects(Ray ray);
 
+    /**
+     * Calculates the distance along the ray at which it enters the bounding region.
+     *
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance from the ray origin to consider
+     * @return the entry distance (0 if the ray head is inside the region),
+     * or {@link Double#POSITIVE_INFINITY} if the ray misses the region within {@code maxDistance}
+     */
+    public abstract double entryDistance(Ray ray, double maxDistance);
+
     public abstract int longestAxis(); // 0 for x, 1 for y, 2 for z
 
     public abstract double center(int axis); // Returns center value along specified axis
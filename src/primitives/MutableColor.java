@@ -0,0 +1,126 @@
+package primitives;
+
+/**
+ * A mutable RGB color of three primitive components, for accumulating colors on the rendering
+ * hot path, where every {@link Color} operation would create a new color and a new triad.
+ * The operations update the color in place and return it, for chaining.
+ * <p>
+ * Shading sums the contributions of the lights, the secondary rays and the supersamples of a pixel
+ * into one accumulator, which is converted to an immutable {@link Color} only when the pixel is written.
+ * The components are not checked to be non-negative, since all the added colors and factors are;
+ * an accumulator is not thread safe - each thread uses its own.
+ */
+public final class MutableColor {
+    private double r;
+    private double g;
+    private double b;
+
+    /**
+     * Constructs a black color.
+     */
+    public MutableColor() {
+    }
+
+    /**
+     * Sets the color to black.
+     *
+     * @return this color
+     */
+    public MutableColor reset() {
+        r = g = b = 0;
+        return this;
+    }
+
+    /**
+     * Adds a color.
+     *
+     * @param c the color to add
+     * @return this color
+     */
+    public MutableColor add(Color c) {
+        r += c.rgb.d1();
+        g += c.rgb.d2();
+        b += c.rgb.d3();
+        return this;
+    }
+
+    /**
+     * Adds an accumulated color.
+     *
+     * @param c the color to add
+     * @return this color
+     */
+    public MutableColor add(MutableColor c) {
+        r += c.r;
+        g += c.g;
+        b += c.b;
+        return this;
+    }
+
+    /**
+     * Adds a color scaled by a factor per component (multiply-add).
+     *
+     * @param c  the color to add
+     * @param kr the scale of the red component
+     * @param kg the scale of the green component
+     * @param kb the scale of the blue component
+     * @return this color
+     */
+    public MutableColor add(Color c, double kr, double kg, double kb) {
+        r += c.rgb.d1() * kr;
+        g += c.rgb.d2() * kg;
+        b += c.rgb.d3() * kb;
+        return this;
+    }
+
+    /**
+     * Adds a color scaled by a factor triad (multiply-add).
+     *
+     * @param c the color to add
+     * @param k the scale per component
+     * @return this color
+     */
+    public MutableColor add(Color c, Double3 k) {
+        return add(c, k.d1(), k.d2(), k.d3());
+    }
+
+    /**
+     * Scales the color.
+     *
+     * @param k the scale
+     * @return this color
+     */
+    public MutableColor scale(double k) {
+        r *= k;
+        g *= k;
+        b *= k;
+        return this;
+    }
+
+    /**
+     * Divides the color, e.g. to average the sum of several samples.
+     *
+     * @param k the reduction factor
+     * @return this color
+     */
+    public MutableColor reduce(double k) {
+        r /= k;
+        g /= k;
+        b /= k;
+        return this;
+    }
+
+    /**
+     * Creates the immutable color of the components.
+     *
+     * @return the color
+     */
+    public Color toColor() {
+        return new Color(r, g, b);
+    }
+
+    @Override
+    public String toString() {
+        return "rgb:(" + r + "," + g + "," + b + ")";
+    }
+}
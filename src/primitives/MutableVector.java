@@ -0,0 +1,150 @@
+package primitives;
+
+/**
+ * A mutable vector of three primitive components, for scratch computations on the rendering
+ * hot path, where every {@link Point} and {@link Vector} operation would create new objects.
+ * The operations update the vector in place and return it, for chaining.
+ * <p>
+ * Scenes are authored with the immutable {@link Point} and {@link Vector}; a scratch vector is
+ * converted to them only where an object must outlive the computation (e.g. the head of a ray).
+ * A scratch vector may be zero, and is not thread safe - each thread uses its own.
+ */
+public final class MutableVector {
+    private double x;
+    private double y;
+    private double z;
+
+    /**
+     * Constructs a zero vector.
+     */
+    public MutableVector() {
+    }
+
+    /**
+     * Sets the components.
+     *
+     * @param x the x component
+     * @param y the y component
+     * @param z the z component
+     * @return this vector
+     */
+    public MutableVector set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Sets the components to the coordinates of a point (or the components of a vector).
+     *
+     * @param p the point
+     * @return this vector
+     */
+    public MutableVector set(Point p) {
+        return set(p.xyz.d1(), p.xyz.d2(), p.xyz.d3());
+    }
+
+    /**
+     * Sets the vector to the difference of two points.
+     *
+     * @param head the head of the vector
+     * @param tail the tail of the vector
+     * @return this vector - {@code head - tail}
+     */
+    public MutableVector setDifference(Point head, Point tail) {
+        return set(head.xyz.d1() - tail.xyz.d1(), head.xyz.d2() - tail.xyz.d2(), head.xyz.d3() - tail.xyz.d3());
+    }
+
+    /**
+     * Adds a scaled vector.
+     *
+     * @param v the vector to add
+     * @param k the scale of the added vector
+     * @return this vector
+     */
+    public MutableVector addScaled(Vector v, double k) {
+        return set(x + k * v.xyz.d1(), y + k * v.xyz.d2(), z + k * v.xyz.d3());
+    }
+
+    /**
+     * Scales the vector.
+     *
+     * @param k the scale
+     * @return this vector
+     */
+    public MutableVector scale(double k) {
+        return set(k * x, k * y, k * z);
+    }
+
+    /**
+     * Normalizes the vector.
+     *
+     * @return this vector
+     */
+    public MutableVector normalize() {
+        return scale(1 / Math.sqrt(lengthSquared()));
+    }
+
+    /**
+     * @return the squared length of the vector
+     */
+    public double lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Computes the dot product with a vector.
+     *
+     * @param v the vector
+     * @return the dot product
+     */
+    public double dotProduct(Vector v) {
+        return x * v.xyz.d1() + y * v.xyz.d2() + z * v.xyz.d3();
+    }
+
+    /**
+     * @return the x component
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return the y component
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return the z component
+     */
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * Creates the immutable vector of the components.
+     *
+     * @return the vector
+     * @throws IllegalArgumentException if the vector is zero
+     */
+    public Vector toVector() {
+        return new Vector(x, y, z);
+    }
+
+    /**
+     * Creates the point whose coordinates are the components.
+     *
+     * @return the point
+     */
+    public Point toPoint() {
+        return new Point(x, y, z);
+    }
+
+    @Override
+    public String toString() {
+        return "->(" + x + "," + y + "," + z + ")";
+    }
+}
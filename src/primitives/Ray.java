@@ -21,6 +21,16 @@ public class Ray {
      * The normalized direction vector of the ray.
      */
     private final Vector direction;
+    /**
+     * Inverse of the direction components, precomputed for box tests. Along an axis the direction
+     * is parallel to, it is an infinity of the component's sign.
+     */
+    private final double inverseX, inverseY, inverseZ;
+    /**
+     * Signs of the inverse direction components, which pick the near and far plane of a slab:
+     * bit 0, 1 and 2 are set for a negative x, y and z component respectively.
+     */
+    private final int signs;
     private static final double DELTA = 0.1;
 
 
@@ -34,6 +44,11 @@ public class Ray {
     public Ray(Point head, Vector direction) {
         this.head = head;
         this.direction = direction.normalize();
+        Double3 d = this.direction.get_xyz();
+        this.inverseX = inverse(d.d1());
+        this.inverseY = inverse(d.d2());
+        this.inverseZ = inverse(d.d3());
+        this.signs = signs(inverseX, inverseY, inverseZ);
     }
 
     public Ray(Point head, Vector direction, Vector normal) {
@@ -44,12 +59,77 @@ public class Ray {
         } else {
             this.head = head;
         }
+        Double3 d = this.direction.get_xyz();
+        this.inverseX = inverse(d.d1());
+        this.inverseY = inverse(d.d2());
+        this.inverseZ = inverse(d.d3());
+        this.signs = signs(inverseX, inverseY, inverseZ);
+    }
+
+    /**
+     * Computes the inverse of a direction component, an infinity for a zero component.
+     *
+     * @param d the direction component
+     * @return the inverse component
+     */
+    private static double inverse(double d) {
+        return isZero(d) ? Math.copySign(Double.POSITIVE_INFINITY, d) : 1 / d;
+    }
+
+    /**
+     * Packs the signs of the inverse direction components into sign bits.
+     *
+     * @param ix the inverse direction x-component
+     * @param iy the inverse direction y-component
+     * @param iz the inverse direction z-component
+     * @return the sign bits (see {@link #getSigns()})
+     */
+    private static int signs(double ix, double iy, double iz) {
+        return (ix < 0 ? 1 : 0) | (iy < 0 ? 2 : 0) | (iz < 0 ? 4 : 0);
     }
 
     public Vector getDirection() {
         return direction;
     }
 
+    /**
+     * Returns the inverse of the direction x-component, for box tests without divisions.
+     * It is infinite if the direction is parallel to the x-axis.
+     *
+     * @return the inverse direction x-component
+     */
+    public double getInverseX() {
+        return inverseX;
+    }
+
+    /**
+     * Returns the inverse of the direction y-component (see {@link #getInverseX()}).
+     *
+     * @return the inverse direction y-component
+     */
+    public double getInverseY() {
+        return inverseY;
+    }
+
+    /**
+     * Returns the inverse of the direction z-component (see {@link #getInverseX()}).
+     *
+     * @return the inverse direction z-component
+     */
+    public double getInverseZ() {
+        return inverseZ;
+    }
+
+    /**
+     * Returns the signs of the inverse direction components: bit 0, 1 and 2 are set
+     * for a negative x, y and z component respectively.
+     *
+     * @return the sign bits
+     */
+    public int getSigns() {
+        return signs;
+    }
+
     public Point getHead() {
         return head;
     }
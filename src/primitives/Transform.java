@@ -0,0 +1,261 @@
+package primitives;
+
+import static primitives.Util.isZero;
+
+/**
+ * Affine transformation of 3D space: a linear part (rotation, scaling, shearing)
+ * followed by a translation. The inverse is computed once, on construction.
+ * <p>
+ * Transformations are immutable and are composed with {@link #then(Transform)}.
+ */
+public final class Transform {
+    /** The identity transformation */
+    public static final Transform IDENTITY = new Transform(new double[]{
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0});
+
+    /** Row-major 3x4 matrix: 3x3 linear part with the translation in the 4th column */
+    private final double[] m;
+    /** The inverse matrix, in the same layout */
+    private final double[] inv;
+
+    /**
+     * Constructs a transformation from its 3x4 matrix.
+     *
+     * @param m row-major 3x4 matrix
+     * @throws IllegalArgumentException if the linear part is singular
+     */
+    private Transform(double[] m) {
+        this.m = m;
+        double c00 = m[5] * m[10] - m[6] * m[9];
+        double c01 = m[6] * m[8] - m[4] * m[10];
+        double c02 = m[4] * m[9] - m[5] * m[8];
+        double det = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (isZero(det))
+            throw new IllegalArgumentException("Transformation must be invertible");
+        double d = 1 / det;
+        inv = new double[12];
+        inv[0] = c00 * d;
+        inv[1] = (m[2] * m[9] - m[1] * m[10]) * d;
+        inv[2] = (m[1] * m[6] - m[2] * m[5]) * d;
+        inv[4] = c01 * d;
+        inv[5] = (m[0] * m[10] - m[2] * m[8]) * d;
+        inv[6] = (m[2] * m[4] - m[0] * m[6]) * d;
+        inv[8] = c02 * d;
+        inv[9] = (m[1] * m[8] - m[0] * m[9]) * d;
+        inv[10] = (m[0] * m[5] - m[1] * m[4]) * d;
+        for (int r = 0; r < 3; r++)
+            inv[4 * r + 3] = -(inv[4 * r] * m[3] + inv[4 * r + 1] * m[7] + inv[4 * r + 2] * m[11]);
+    }
+
+    /**
+     * Creates a translation.
+     *
+     * @param offset the translation vector
+     * @return the transformation
+     */
+    public static Transform translation(Vector offset) {
+        Double3 t = offset.get_xyz();
+        return translation(t.d1(), t.d2(), t.d3());
+    }
+
+    /**
+     * Creates a translation by offsets along the axes (which, unlike a {@link Vector}, may all be zero).
+     *
+     * @param dx the offset along the x-axis
+     * @param dy the offset along the y-axis
+     * @param dz the offset along the z-axis
+     * @return the transformation
+     */
+    public static Transform translation(double dx, double dy, double dz) {
+        return new Transform(new double[]{
+                1, 0, 0, dx,
+                0, 1, 0, dy,
+                0, 0, 1, dz});
+    }
+
+    /**
+     * Creates a uniform scaling about the origin.
+     *
+     * @param factor the scale factor
+     * @return the transformation
+     */
+    public static Transform scaling(double factor) {
+        return scaling(factor, factor, factor);
+    }
+
+    /**
+     * Creates a scaling about the origin along the axes.
+     *
+     * @param sx the scale factor along the x-axis
+     * @param sy the scale factor along the y-axis
+     * @param sz the scale factor along the z-axis
+     * @return the transformation
+     * @throws IllegalArgumentException if any factor is zero
+     */
+    public static Transform scaling(double sx, double sy, double sz) {
+        return new Transform(new double[]{
+                sx, 0, 0, 0,
+                0, sy, 0, 0,
+                0, 0, sz, 0});
+    }
+
+    /**
+     * Creates a rotation about an axis through the origin (right-hand rule).
+     *
+     * @param axis  the rotation axis
+     * @param angle the rotation angle in degrees
+     * @return the transformation
+     */
+    public static Transform rotation(Vector axis, double angle) {
+        Double3 u = axis.normalize().get_xyz();
+        double x = u.d1(), y = u.d2(), z = u.d3();
+        double rad = Math.toRadians(angle);
+        double c = Math.cos(rad), s = Math.sin(rad), t = 1 - c;
+        return new Transform(new double[]{
+                t * x * x + c, t * x * y - s * z, t * x * z + s * y, 0,
+                t * x * y + s * z, t * y * y + c, t * y * z - s * x, 0,
+                t * x * z - s * y, t * y * z + s * x, t * z * z + c, 0});
+    }
+
+    /**
+     * Composes this transformation with another one, applied after it.
+     *
+     * @param next the transformation to apply after this one
+     * @return the composed transformation
+     */
+    public Transform then(Transform next) {
+        double[] a = next.m;
+        double[] r = new double[12];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 4; col++)
+                r[4 * row + col] = a[4 * row] * m[col] + a[4 * row + 1] * m[4 + col] + a[4 * row + 2] * m[8 + col];
+            r[4 * row + 3] += a[4 * row + 3];
+        }
+        return new Transform(r);
+    }
+
+    /**
+     * Returns the inverse transformation.
+     *
+     * @return the inverse transformation
+     */
+    public Transform inverse() {
+        return new Transform(inv.clone());
+    }
+
+    /**
+     * Transforms a point.
+     *
+     * @param p the point
+     * @return the transformed point
+     */
+    public Point transformPoint(Point p) {
+        return new Point(applyPoint(m, p.get_xyz()));
+    }
+
+    /**
+     * Transforms a point by the inverse transformation.
+     *
+     * @param p the point
+     * @return the point transformed back
+     */
+    public Point inverseTransformPoint(Point p) {
+        return new Point(applyPoint(inv, p.get_xyz()));
+    }
+
+    /**
+     * Transforms a direction (the translation does not apply).
+     *
+     * @param v the direction
+     * @return the transformed direction
+     */
+    public Vector transformVector(Vector v) {
+        return new Vector(applyVector(m, v.get_xyz()));
+    }
+
+    /**
+     * Transforms a direction by the inverse transformation.
+     *
+     * @param v the direction
+     * @return the direction transformed back
+     */
+    public Vector inverseTransformVector(Vector v) {
+        return new Vector(applyVector(inv, v.get_xyz()));
+    }
+
+    /**
+     * Transforms a surface normal, by the inverse transpose of the linear part,
+     * so it stays orthogonal to the transformed surface.
+     *
+     * @param n the normal
+     * @return the transformed normal, normalized
+     */
+    public Vector transformNormal(Vector n) {
+        Double3 v = n.get_xyz();
+        return new Vector(
+                inv[0] * v.d1() + inv[4] * v.d2() + inv[8] * v.d3(),
+                inv[1] * v.d1() + inv[5] * v.d2() + inv[9] * v.d3(),
+                inv[2] * v.d1() + inv[6] * v.d2() + inv[10] * v.d3()).normalize();
+    }
+
+    /**
+     * Transforms a ray into the space this transformation maps from, i.e. by the inverse transformation.
+     *
+     * @param ray the ray
+     * @return the ray transformed back (with a normalized direction)
+     */
+    public Ray inverseTransformRay(Ray ray) {
+        return new Ray(inverseTransformPoint(ray.getHead()), inverseTransformVector(ray.getDirection()));
+    }
+
+    /**
+     * Returns the factor by which the inverse transformation stretches a unit direction -
+     * distances along a ray transformed back are scaled by it.
+     *
+     * @param direction a unit direction
+     * @return the length of the direction transformed back
+     */
+    public double inverseStretch(Vector direction) {
+        Double3 d = applyVector(inv, direction.get_xyz());
+        return Math.sqrt(d.d1() * d.d1() + d.d2() * d.d2() + d.d3() * d.d3());
+    }
+
+    /**
+     * Transforms a box, returning the box bounding its 8 transformed corners.
+     *
+     * @param box the box
+     * @return the bounding box of the transformed box
+     */
+    public AABB transformBox(AABB box) {
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int corner = 0; corner < 8; corner++) {
+            Double3 p = applyPoint(m, new Double3(
+                    (corner & 1) == 0 ? box.getX_min() : box.getX_max(),
+                    (corner & 2) == 0 ? box.getY_min() : box.getY_max(),
+                    (corner & 4) == 0 ? box.getZ_min() : box.getZ_max()));
+            double[] c = {p.d1(), p.d2(), p.d3()};
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], c[axis]);
+                max[axis] = Math.max(max[axis], c[axis]);
+            }
+        }
+        return new AABB(min[0], min[1], min[2], max[0], max[1], max[2]);
+    }
+
+    private static Double3 applyPoint(double[] a, Double3 p) {
+        return new Double3(
+                a[0] * p.d1() + a[1] * p.d2() + a[2] * p.d3() + a[3],
+                a[4] * p.d1() + a[5] * p.d2() + a[6] * p.d3() + a[7],
+                a[8] * p.d1() + a[9] * p.d2() + a[10] * p.d3() + a[11]);
+    }
+
+    private static Double3 applyVector(double[] a, Double3 v) {
+        return new Double3(
+                a[0] * v.d1() + a[1] * v.d2() + a[2] * v.d3(),
+                a[4] * v.d1() + a[5] * v.d2() + a[6] * v.d3(),
+                a[8] * v.d1() + a[9] * v.d2() + a[10] * v.d3());
+    }
+}
@@ -74,7 +74,7 @@ public class Vector extends Point {
      * @param v The vector to compute the dot product with.
      * @return The dot product as a double.
      */
-    public Double dotProduct(Vector v) {
+    public double dotProduct(Vector v) {
         return this.xyz.d1() * v.xyz.d1() + this.xyz.d2() * v.xyz.d2() + this.xyz.d3() * v.xyz.d3();
     }
 
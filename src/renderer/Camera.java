@@ -1,13 +1,17 @@
 package renderer;
 
+import geometries.BVHBuilder;
+import geometries.BVHCache;
 import primitives.*;
 import primitives.Color;
 import primitives.Point;
 import scene.Scene;
-import renderer.PixelManager.Pixel;
+import renderer.TileManager.Tile;
 import renderer.blackboard.Blackboard;
 import renderer.blackboard.RectangleBlackboard;
 
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.MissingResourceException;
 import java.util.List;
@@ -38,11 +42,44 @@ public class Camera implements Cloneable {
     private int nY = 1;
     private int threadsCount = 0;
     private static final int SPARE_THREADS = 2;
+    /** Side of the square blocks of neighbouring pixels traced together as a packet, with a single ray per pixel */
+    private static final int PACKET_SIDE = 4;
+    /** Amount of rays traced together as a packet */
+    private static final int PACKET_SIZE = PACKET_SIDE * PACKET_SIDE;
+    /** Default size of a side of the image tiles rendered by the threads, in pixels */
+    private static final int DEFAULT_TILE_SIZE = 16;
+    private int tileSize = DEFAULT_TILE_SIZE;
     private double printInterval = 0;
-    private PixelManager pixelManager;
+    private TileManager tileManager;
     private int numRays = 1;
     private boolean enableCBR = false;
     private boolean enableBVH = false;
+    private BVHCache bvhCache;
+    private boolean compactBVH = false;
+
+
+    /**
+     * The packet of a rendering thread, reused for all the packets the thread traces.
+     */
+    private static final class Packet {
+        /** The rays of the packet */
+        private final Ray[] rays = new Ray[PACKET_SIZE];
+        /** The color of each pixel of a block of neighbouring pixels */
+        private final MutableColor[] pixels = new MutableColor[PACKET_SIZE];
+        /** The sum of the colors of the rays of a super sampled pixel */
+        private final MutableColor sum = new MutableColor();
+        /** The accumulator of each ray of a super sampled pixel - the sum, shared by all the rays */
+        private final MutableColor[] sums = new MutableColor[PACKET_SIZE];
+
+        private Packet() {
+            for (int i = 0; i < PACKET_SIZE; i++)
+                pixels[i] = new MutableColor();
+            Arrays.fill(sums, sum);
+        }
+    }
+
+    /** The packet of each rendering thread */
+    private static final ThreadLocal<Packet> PACKETS = ThreadLocal.withInitial(Packet::new);
 
     private Camera() {
     }
@@ -89,14 +126,56 @@ public class Camera implements Cloneable {
      * @return This camera instance.
      */
     public Camera renderImageNoThreads() {
-        for (int j = 0; j < nX; j++) {
-            for (int i = 0; i < nY; i++)
-                castRay(j, i);
-            System.out.println(j);
-        }
+        tileManager = new TileManager(nY, nX, tileSize, printInterval);
+        Tile tile;
+        while ((tile = tileManager.nextTile()) != null)
+            renderTile(tile);
         return this;
     }
 
+    /**
+     * Renders the pixels of a tile, and reports the tile to the tile manager.
+     *
+     * @param tile the tile
+     */
+    private void renderTile(Tile tile) {
+        int rowEnd = tile.row() + tile.height();
+        int colEnd = tile.col() + tile.width();
+        if (numRays == 1) {
+            // the rays of neighbouring pixels are nearly identical - trace blocks of pixels in packets
+            for (int i = tile.row(); i < rowEnd; i += PACKET_SIDE)
+                for (int j = tile.col(); j < colEnd; j += PACKET_SIDE)
+                    castRays(j, i, Math.min(j + PACKET_SIDE, colEnd), Math.min(i + PACKET_SIDE, rowEnd));
+        } else
+            for (int i = tile.row(); i < rowEnd; i++)
+                for (int j = tile.col(); j < colEnd; j++)
+                    castRay(j, i);
+        tileManager.tileDone(tile);
+    }
+
+    /**
+     * Casts a single ray through each pixel of a block of neighbouring pixels, tracing the rays as one packet.
+     *
+     * @param startCol first column of the block
+     * @param startRow first row of the block
+     * @param endCol   column after the block
+     * @param endRow   row after the block
+     */
+    private void castRays(int startCol, int startRow, int endCol, int endRow) {
+        Packet packet = PACKETS.get();
+        int count = 0;
+        for (int i = startRow; i < endRow; i++)
+            for (int j = startCol; j < endCol; j++) {
+                packet.rays[count] = constructRay(nX, nY, j, i);
+                packet.pixels[count++].reset();
+            }
+        rayTracer.traceRays(packet.rays, count, packet.pixels);
+        count = 0;
+        for (int i = startRow; i < endRow; i++)
+            for (int j = startCol; j < endCol; j++)
+                imageWriter.writePixel(j, i, packet.pixels[count++].toColor());
+    }
+
     /**
      * Draws a grid on the rendered image with the specified interval and color.
      *
@@ -123,30 +202,38 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * Casts the super sampling rays of a pixel, tracing them in packets.
+     *
+     * @param j pixel column index
+     * @param i pixel row index
+     */
     private void castRay(int j, int i) {
         Point pixelCenter = constructPixelCenter(nX, nY, j, i);
 
-        if (numRays == 1) {
-            Ray ray = new Ray(p0, pixelCenter.subtract(p0));
-            Color intensity = rayTracer.traceRay(ray);
-            imageWriter.writePixel(j, i, intensity);
-        } else {
-            // Create a fresh blackboard instance for thread safety
-            Blackboard localBoard = new RectangleBlackboard()
-                    .setCenter(pixelCenter)
-                    .setOrientation(vTo, vRight)
-                    .setWidthHeight(viewPlaneWidth / nX, viewPlaneHeight / nY)
-                    .setNumRays(numRays);
-
-            List<Ray> rays = localBoard.constructRays(p0);
-            Color color = Color.BLACK;
-            for (Ray ray : rays) {
-                color = color.add(rayTracer.traceRay(ray));
+        // Create a fresh blackboard instance for thread safety
+        Blackboard localBoard = new RectangleBlackboard()
+                .setCenter(pixelCenter)
+                .setOrientation(vTo, vRight)
+                .setWidthHeight(viewPlaneWidth / nX, viewPlaneHeight / nY)
+                .setNumRays(numRays);
+
+        List<Ray> rays = localBoard.constructRays(p0);
+        // the samples are summed in place and converted to a color only for the image
+        Packet packet = PACKETS.get();
+        MutableColor color = packet.sum.reset();
+        // the rays of a pixel are nearly identical - trace them in packets sharing the traversal
+        int count = 0;
+        for (Ray ray : rays) {
+            packet.rays[count++] = ray;
+            if (count == PACKET_SIZE) {
+                rayTracer.traceRays(packet.rays, count, packet.sums);
+                count = 0;
             }
-            imageWriter.writePixel(j, i, color.reduce(rays.size()));
         }
-
-        if (pixelManager != null) pixelManager.pixelDone();
+        if (count > 0)
+            rayTracer.traceRays(packet.rays, count, packet.sums);
+        imageWriter.writePixel(j, i, color.reduce(rays.size()).toColor());
     }
 
 
@@ -161,12 +248,13 @@ public class Camera implements Cloneable {
 
 
     private Camera renderImageRawThreads() {
+        tileManager = new TileManager(nY, nX, tileSize, printInterval);
         var threads = new LinkedList<Thread>();
         while (threadsCount-- > 0)
             threads.add(new Thread(() -> {
-                Pixel pixel;
-                while ((pixel = pixelManager.nextPixel()) != null)
-                    castRay(pixel.col(), pixel.row());
+                Tile tile;
+                while ((tile = tileManager.nextTile()) != null)
+                    renderTile(tile);
             }));
         for (var thread : threads)
             thread.start();
@@ -183,14 +271,15 @@ public class Camera implements Cloneable {
      * @return This camera instance.
      */
     public Camera renderImageStream() {
-        IntStream.range(0, nY).parallel()
-                .forEach(i -> IntStream.range(0, nX).parallel()
-                        .forEach(j -> castRay(j, i)));
+        tileManager = new TileManager(nY, nX, tileSize, printInterval);
+        IntStream.range(0, tileManager.getTileCount()).parallel()
+                .forEach(t -> renderTile(tileManager.getTile(t)));
         return this;
     }
 
     /**
      * Renders the image based on the selected multithreading configuration.
+     * The image is rendered in tiles (see {@link Builder#setTileSize(int)}), taken in Morton order.
      * <ul>
      *     <li>threadsCount = 0 → single-threaded</li>
      *     <li>threadsCount = -1 → parallel streams</li>
@@ -200,7 +289,6 @@ public class Camera implements Cloneable {
      * @return This camera instance.
      */
     public Camera renderImage() {
-        pixelManager = new PixelManager(nY, nX, printInterval);
         return switch (threadsCount) {
             case 0 -> renderImageNoThreads();
             case -1 -> renderImageStream();
@@ -268,10 +356,10 @@ public class Camera implements Cloneable {
         }
 
         public Builder setRayTracer(Scene scene, RayTracerType rayTracerType) {
-            if (rayTracerType == RayTracerType.SIMPLE)
-                camera.rayTracer = new SimpleRayTracer(scene);
-            else
-                camera.rayTracer = null;
+            camera.rayTracer = switch (rayTracerType) {
+                case SIMPLE -> new SimpleRayTracer(scene);
+                case GRID -> new GridRayTracer(scene);
+            };
             return this;
         }
 
@@ -285,6 +373,20 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the size of the square tiles the image is divided into for rendering.
+         * Threads take whole tiles, and the progress is reported once per tile.
+         *
+         * @param tileSize the size of a tile side, in pixels (e.g. 16 or 32)
+         * @return this builder
+         */
+        public Builder setTileSize(int tileSize) {
+            if (tileSize <= 0)
+                throw new IllegalArgumentException("Tile size must be positive");
+            camera.tileSize = tileSize;
+            return this;
+        }
+
         public Builder setDebugPrint(double interval) {
             if (interval < 0)
                 throw new IllegalArgumentException("Interval value must be non-negative");
@@ -307,6 +409,30 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Enables the BVH in its compact form, with quantized 4-wide nodes, for scenes bounded by memory.
+         *
+         * @return this builder
+         */
+        public Builder enableCompactBVH() {
+            camera.enableBVH = true;
+            camera.compactBVH = true;
+            return this;
+        }
+
+        /**
+         * Enables the BVH, loading it from (and storing it in) an on-disk cache,
+         * so an unchanged scene is not rebuilt on every run.
+         *
+         * @param directory the cache directory
+         * @return this builder
+         */
+        public Builder enableBVHCache(Path directory) {
+            camera.enableBVH = true;
+            camera.bvhCache = new BVHCache(directory);
+            return this;
+        }
+
         public Camera build() {
             if (camera.p0 == null)
                 throw new MissingResourceException(ERROR_MESSAGE, CLASS_NAME, "p0");
@@ -334,8 +460,20 @@ public class Camera implements Cloneable {
                 if (camera.enableCBR) {
                     camera.rayTracer.scene.geometries.createCBR();
                 }
-                if (camera.enableBVH) {
-                    camera.rayTracer.scene.geometries.createBVH();
+                // the grid tracer compiles a grid of its own, leaving the scene geometries as they are
+                if (camera.rayTracer instanceof GridRayTracer gridRayTracer) {
+                    if (camera.enableBVH)
+                        throw new IllegalArgumentException("The grid ray tracer cannot be combined with a BVH");
+                    gridRayTracer.compileGrid();
+                } else if (camera.compactBVH) {
+                    // the cache stores binary hierarchies only
+                    if (camera.bvhCache != null)
+                        throw new IllegalArgumentException("The compact BVH cannot be combined with the BVH cache");
+                    camera.rayTracer.scene.geometries.compileCompactBVH();
+                } else if (camera.bvhCache != null) {
+                    camera.rayTracer.scene.geometries.compileBVH(new BVHBuilder(), camera.bvhCache);
+                } else if (camera.enableBVH) {
+                    camera.rayTracer.scene.geometries.compileBVH();
                 }
             }
             return (Camera) camera.clone();
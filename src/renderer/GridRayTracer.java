@@ -0,0 +1,46 @@
+package renderer;
+
+import geometries.Geometries;
+import scene.Scene;
+
+/**
+ * Ray tracer accelerated by a regular grid.
+ * <p>
+ * Shading is the same as in {@link SimpleRayTracer}; the difference is in the geometries the rays
+ * are traced through: the tracer compiles its own {@link geometries.RegularGrid} over the scene
+ * geometries when the {@link Camera} is built with it, leaving the scene geometries as they are
+ * for the other cameras of the scene. Rays then walk the grid voxels front to back instead of
+ * testing every geometry. The grid suits scenes made of many evenly sized objects.
+ */
+public class GridRayTracer extends SimpleRayTracer {
+    /** The scene geometries compiled into a grid, {@code null} until {@link #compileGrid()} */
+    private Geometries grid;
+
+    /**
+     * Constructs a grid ray tracer for the given scene.
+     *
+     * @param scene the {@link Scene} to trace rays through
+     */
+    public GridRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Compiles the current scene geometries into the grid of this tracer.
+     */
+    void compileGrid() {
+        Geometries geometries = new Geometries(scene.geometries);
+        geometries.compileGrid();
+        grid = geometries;
+    }
+
+    /**
+     * Returns the grid of this tracer, or the scene geometries if the grid is not compiled yet.
+     *
+     * @return the geometries the rays are traced through
+     */
+    @Override
+    protected Geometries geometries() {
+        return grid == null ? scene.geometries : grid;
+    }
+}
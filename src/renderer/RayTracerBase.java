@@ -1,6 +1,7 @@
 package renderer;
 
 import primitives.Color;
+import primitives.MutableColor;
 import primitives.Ray;
 import scene.Scene;
 
@@ -34,4 +35,29 @@ public abstract class RayTracerBase {
      * @return the computed {@link Color} based on scene geometry and lighting
      */
     public abstract Color traceRay(Ray ray);
+
+    /**
+     * Traces a given ray through the scene and adds the resulting color to an accumulator.
+     * By default the color is computed by {@link #traceRay(Ray)}.
+     *
+     * @param ray   the {@link Ray} to trace
+     * @param color the accumulator of the color
+     */
+    public void traceRay(Ray ray, MutableColor color) {
+        color.add(traceRay(ray));
+    }
+
+    /**
+     * Traces a packet of coherent rays (e.g. the rays of one pixel, or of neighbouring pixels)
+     * through the scene and adds the color of each ray to its accumulator. Rays may share an
+     * accumulator to sum their colors. By default each ray is traced on its own.
+     *
+     * @param rays   the array holding the rays to trace
+     * @param count  the amount of rays to trace, from the start of the array
+     * @param colors the accumulator of the color of each ray
+     */
+    public void traceRays(Ray[] rays, int count, MutableColor[] colors) {
+        for (int i = 0; i < count; i++)
+            traceRay(rays[i], colors[i]);
+    }
 }
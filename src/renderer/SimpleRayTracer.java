@@ -3,6 +3,9 @@ package renderer;
 import lighting.LightSource;
 import primitives.*;
 import scene.Scene;
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Intersectable;
 import geometries.Intersectable.Intersection;
 
 import java.util.List;
@@ -20,277 +23,295 @@ public class SimpleRayTracer extends RayTracerBase {
     private static final Double3 INITIAL_K = Double3.ONE;
     private static final double DELTA = 0.1;
 
+    /**
+     * The shading data of an intersection. Instead of being stored in the intersections, the data is
+     * filled in a record of the thread, reused for all the intersections shaded at one recursion level.
+     */
+    private static final class HitRecord {
+        private Geometry geometry;
+        private Point point;
+        private Material material;
+        private Vector v;
+        private Vector normal;
+        private double vNormal;
+        private LightSource light;
+        private final MutableVector l = new MutableVector(); // reused for all the lights
+        private final MutableVector scratch = new MutableVector(); // reused for the secondary rays
+        private double lNormal;
+        /** The record of the next recursion level, created on first use */
+        private HitRecord next;
+
+        /**
+         * @return the record of the next recursion level
+         */
+        private HitRecord next() {
+            if (next == null) next = new HitRecord();
+            return next;
+        }
+    }
+
+    /** The records of the top recursion level of each thread, linked to the deeper levels */
+    private static final ThreadLocal<HitRecord> HIT_RECORDS = ThreadLocal.withInitial(HitRecord::new);
+
     public SimpleRayTracer(Scene scene) {
         super(scene);
     }
 
+    /**
+     * Returns the geometries the rays are traced through.
+     *
+     * @return the scene geometries
+     */
+    protected Geometries geometries() {
+        return scene.geometries;
+    }
+
     @Override
     public Color traceRay(Ray ray) {
         Intersection closestIntersection = findClosestIntersection(ray);
         if (closestIntersection == null)
             return scene.background;
-        return calcColor(closestIntersection, ray);
+        MutableColor color = new MutableColor();
+        calcColor(closestIntersection, ray, color);
+        return color.toColor();
+    }
+
+    @Override
+    public void traceRay(Ray ray, MutableColor color) {
+        Intersection closestIntersection = findClosestIntersection(ray);
+        if (closestIntersection == null)
+            color.add(scene.background);
+        else
+            calcColor(closestIntersection, ray, color);
     }
 
     /**
-     * Calculates the full color at a given intersection.
+     * Traces a packet of coherent rays, finding their closest intersections
+     * in one traversal of the scene geometries.
+     *
+     * @param rays   the array holding the rays to trace
+     * @param count  the amount of rays to trace, at most {@link Intersectable#MAX_PACKET_SIZE}
+     * @param colors the accumulator of the color of each ray
+     */
+    @Override
+    public void traceRays(Ray[] rays, int count, MutableColor[] colors) {
+        Intersection[] closestIntersections = geometries().calculateClosestIntersections(rays, count);
+        for (int i = 0; i < count; i++)
+            if (closestIntersections[i] == null)
+                colors[i].add(scene.background);
+            else
+                calcColor(closestIntersections[i], rays[i], colors[i]);
+    }
+
+    /**
+     * Calculates the full color at a given intersection and adds it to an accumulator.
      *
      * @param intersection the intersection point
      * @param ray          the original ray
-     * @return the calculated color at the point
+     * @param color        the accumulator of the color
      */
-    private Color calcColor(Intersection intersection, Ray ray) {
-        if (!preprocessIntersection(intersection, ray.getDirection()))
-            return Color.BLACK;
+    private void calcColor(Intersection intersection, Ray ray, MutableColor color) {
+        HitRecord record = HIT_RECORDS.get();
+        if (!preprocessIntersection(record, intersection, ray.getDirection()))
+            return;
 
-        return scene.ambientLight.getIntensity().scale(intersection.material.kA)
-                .add(calcColor(intersection, MAX_CALC_COLOR_LEVEL, INITIAL_K));
+        color.add(scene.ambientLight.getIntensity(), record.material.kA);
+        calcColor(record, MAX_CALC_COLOR_LEVEL, INITIAL_K, color);
     }
 
     /**
      * Recursively calculates the color at the intersection using local and global effects.
+     * The color is added to the accumulator already attenuated: the attenuation factor is the product
+     * of the reflection/refraction coefficients along the path of the ray.
      *
-     * @param intersection the intersection point
+     * @param record       the shading record of the intersection
      * @param level        recursion depth
      * @param k            attenuation factor
-     * @return the calculated color
+     * @param color        the accumulator of the color
      */
-    private Color calcColor(Intersection intersection, int level, Double3 k) {
-        Color color = calcColorLocalEffects(intersection, k);
-        return (level == 1) ? color : color.add(calcGlobalEffects(intersection, level, k));
+    private void calcColor(HitRecord record, int level, Double3 k, MutableColor color) {
+        calcColorLocalEffects(record, k, color);
+        if (level > 1)
+            calcGlobalEffects(record, level, k, color);
     }
 
     /**
      * Calculates local lighting effects: emission, diffuse, specular.
      *
-     * @param intersection the intersection point
+     * @param record       the shading record of the intersection
      * @param k            attenuation factor
-     * @return the local color at the point
+     * @param color        the accumulator of the color
      */
-    private Color calcColorLocalEffects(Intersection intersection, Double3 k) {
-        Color color = intersection.geometry.getEmission();
+    private void calcColorLocalEffects(HitRecord record, Double3 k, MutableColor color) {
+        color.add(record.geometry.getEmission(), k);
+        Material material = record.material;
 
         for (LightSource lightSource : scene.lights) {
-            if (!setLightSource(intersection, lightSource))
+            if (!setLightSource(record, lightSource))
                 continue;
 
-            Double3 ktr = transparency(intersection);
-
-            if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) {
-                color = color.add(
-                        lightSource.getIntensity(intersection.point).scale(ktr).scale(
-                                calcDiffusive(intersection).add(calcSpecular(intersection))
-                        )
-                );
+            Double3 ktr = transparency(record);
+            double kr = ktr.d1() * k.d1();
+            double kg = ktr.d2() * k.d2();
+            double kb = ktr.d3() * k.d3();
+
+            if (kr >= MIN_CALC_COLOR_K || kg >= MIN_CALC_COLOR_K || kb >= MIN_CALC_COLOR_K) {
+                double diffusive = calcDiffusive(record);
+                double specular = calcSpecular(record);
+                color.add(lightSource.getIntensity(record.point, record.l),
+                        kr * (material.kD.d1() * diffusive + material.kS.d1() * specular),
+                        kg * (material.kD.d2() * diffusive + material.kS.d2() * specular),
+                        kb * (material.kD.d3() * diffusive + material.kS.d3() * specular));
             }
         }
-
-        return color;
     }
 
     /**
-     * Calculates the specular reflection component using the Phong model.
+     * Calculates the factor of the specular reflection using the Phong model,
+     * to be scaled by the specular coefficient of the material.
      *
-     * @param intersection the intersection point
-     * @return specular reflection coefficient
+     * @param record       the shading record of the intersection
+     * @return specular reflection factor
      */
-    private Double3 calcSpecular(Intersection intersection) {
-        Vector r = intersection.l.subtract(intersection.normal.scale(2 * intersection.lNormal));
-        return intersection.material.kS.scale(
-                Math.pow(
-                        Math.max(0, alignZero(intersection.v.scale(-1).dotProduct(r))),
-                        intersection.material.nSH
-                )
-        );
+    private double calcSpecular(HitRecord record) {
+        // -v·r for the reflection r = l - 2(l·n)n, without constructing r
+        double minusVR = 2 * record.lNormal * record.vNormal - record.l.dotProduct(record.v);
+        return Math.pow(Math.max(0, alignZero(minusVR)), record.material.nSH);
     }
 
     /**
-     * Calculates the diffuse reflection component using the Lambert model.
+     * Calculates the factor of the diffuse reflection using the Lambert model,
+     * to be scaled by the diffuse coefficient of the material.
      *
-     * @param intersection the intersection point
-     * @return diffuse reflection coefficient
+     * @param record       the shading record of the intersection
+     * @return diffuse reflection factor
      */
-    private Double3 calcDiffusive(Intersection intersection) {
-        return intersection.material.kD.scale(Math.abs(intersection.lNormal));
+    private double calcDiffusive(HitRecord record) {
+        return Math.abs(record.lNormal);
     }
 
     /**
      * Calculates global effects: reflection and refraction.
      *
-     * @param intersection the intersection point
+     * @param record       the shading record of the intersection
      * @param level        recursion depth
      * @param k            attenuation factor
-     * @return the global color contribution
+     * @param color        the accumulator of the color
      */
-    private Color calcGlobalEffects(Intersection intersection, int level, Double3 k) {
-        return calcGlobalEffect(constructRefractedRay(intersection), intersection.material.kT, level, k)
-                .add(calcGlobalEffect(constructReflectedRay(intersection), intersection.material.kR, level, k));
+    private void calcGlobalEffects(HitRecord record, int level, Double3 k, MutableColor color) {
+        // the deeper levels fill the next record, leaving this one intact for the second ray
+        HitRecord next = record.next();
+        calcGlobalEffect(constructRefractedRay(record), record.material.kT, level, k, next, color);
+        calcGlobalEffect(constructReflectedRay(record), record.material.kR, level, k, next, color);
     }
 
     /**
      * Constructs a refracted ray from the intersection point.
      *
-     * @param intersection the intersection point
+     * @param record       the shading record of the intersection
      * @return the refracted ray
      */
-    private Ray constructRefractedRay(Intersection intersection) {
-        return new Ray(
-                intersection.point,
-                intersection.v,
-                intersection.normal.scale(intersection.vNormal < 0 ? -1 : 1)
-        );
+    private Ray constructRefractedRay(HitRecord record) {
+        // the ray head is moved off the surface along the normal's side facing the direction,
+        // so the normal needs no flipping
+        return new Ray(record.point, record.v, record.normal);
     }
 
     /**
      * Constructs a reflected ray from the intersection point.
      *
-     * @param intersection the intersection point
+     * @param record       the shading record of the intersection
      * @return the reflected ray
      */
-    private Ray constructReflectedRay(Intersection intersection) {
+    private Ray constructReflectedRay(HitRecord record) {
         return new Ray(
-                intersection.point,
-                intersection.v.subtract(intersection.normal.scale(2 * intersection.vNormal)),
-                intersection.normal.scale(intersection.vNormal < 0 ? 1 : -1)
+                record.point,
+                record.scratch.set(record.v).addScaled(record.normal, -2 * record.vNormal)
+                        .toVector(),
+                record.normal
         );
     }
 
     /**
      * Recursively calculates the color from global effects (reflection/refraction).
      *
-     * @param ray   the reflection/refraction ray
-     * @param kx    reflection/refraction coefficient
-     * @param level recursion depth
-     * @param k     total attenuation factor
-     * @return the global effect color
+     * @param ray    the reflection/refraction ray
+     * @param kx     reflection/refraction coefficient
+     * @param level  recursion depth
+     * @param k      total attenuation factor
+     * @param record the shading record of the next recursion level
+     * @param color  the accumulator of the color
      */
-    private Color calcGlobalEffect(Ray ray, Double3 kx, int level, Double3 k) {
+    private void calcGlobalEffect(Ray ray, Double3 kx, int level, Double3 k, HitRecord record, MutableColor color) {
         Double3 kkx = kx.product(k);
         if (kkx.lowerThan(MIN_CALC_COLOR_K))
-            return Color.BLACK;
+            return;
 
         Intersection intersection = findClosestIntersection(ray);
         if (intersection == null)
-            return scene.background.scale(kx);
-
-        return preprocessIntersection(intersection, ray.getDirection())
-                ? calcColor(intersection, level - 1, kkx).scale(kx)
-                : Color.BLACK;
+            color.add(scene.background, kkx);
+        else if (preprocessIntersection(record, intersection, ray.getDirection()))
+            calcColor(record, level - 1, kkx, color);
     }
 
     /**
-     * Prepares intersection data for shading.
+     * Prepares the shading record of an intersection.
      *
+     * @param record       the shading record to fill
      * @param intersection the intersection
      * @param v            the viewing vector (ray direction)
      * @return true if the intersection is valid (i.e., not parallel to surface), false otherwise
      */
-    public boolean preprocessIntersection(Intersection intersection, Vector v) {
-        intersection.v = v.normalize();
-        intersection.normal = intersection.geometry.getNormal(intersection.point);
-        intersection.vNormal = alignZero(v.dotProduct(intersection.normal));
-        return intersection.vNormal != 0;
+    private boolean preprocessIntersection(HitRecord record, Intersection intersection, Vector v) {
+        record.geometry = intersection.geometry;
+        record.point = intersection.point;
+        record.material = intersection.material;
+        record.v = v.normalize();
+        record.normal = record.geometry.getNormal(record.point);
+        record.vNormal = alignZero(v.dotProduct(record.normal));
+        return record.vNormal != 0;
     }
 
     /**
      * Sets up the light source direction vector and dot product at the intersection.
      *
-     * @param intersection the intersection
-     * @param lightSource  the light source
+     * @param record      the shading record of the intersection
+     * @param lightSource the light source
      * @return true if the light is on the same side as the viewer, false otherwise
      */
-    public boolean setLightSource(Intersection intersection, LightSource lightSource) {
-        intersection.l = lightSource.getL(intersection.point).normalize();
-        intersection.light = lightSource;
-        intersection.lNormal = alignZero(intersection.l.dotProduct(intersection.normal));
-        return intersection.lNormal * intersection.vNormal > 0;
+    private boolean setLightSource(HitRecord record, LightSource lightSource) {
+        lightSource.getL(record.point, record.l);
+        record.light = lightSource;
+        record.lNormal = alignZero(record.l.dotProduct(record.normal));
+        return record.lNormal * record.vNormal > 0;
     }
 
     /**
-     * Checks if the intersection point is unshaded (i.e., not blocked from light).
+     * Calculates the transparency (ktr) along the path to the light, averaged over the shadow rays
+     * of the light. Each shadow ray stops at the first opaque blocker.
      *
-     * @param intersection the point to test
-     * @param l            direction to the light
-     * @return true if unshaded, false if in shadow
-     */
-    private boolean unshaded(Intersection intersection, Vector l) {
-        Vector pointToLight = l.scale(-1);
-        Ray shadowRay = new Ray(intersection.point, pointToLight, intersection.normal);
-
-        var intersections = scene.geometries.calculateIntersections(
-                shadowRay,
-                intersection.light.getDistance(intersection.point)
-        );
-
-        if (intersections == null || intersections.isEmpty())
-            return true;
-
-        for (Intersection shadowIntersection : intersections) {
-            if (shadowIntersection.material.kT.lowerThan(MIN_CALC_COLOR_K))
-                return false;
-        }
-
-        return true;
-    }
-
-    /**
-     * Calculates the transparency (ktr) along the path to the light.
-     *
-     * @param intersection the point to test
+     * @param record       the shading record of the point to test
      * @return the transparency coefficient
      */
-    /**
-     * Calculates the transparency (ktr) along the path to the light.
-     *
-     * @param intersection the point to test
-     * @return the transparency coefficient
-     */
-    private Double3 transparency(Intersection intersection) {
-        Vector pointToLight = intersection.l.scale(-1);
-        double nl = intersection.normal.dotProduct(pointToLight);
-        List<Ray> shadowRays = intersection.light.generateRays(
-                intersection.point.add(intersection.normal.scale(nl > 0 ? DELTA : -DELTA))
-        );
-        Double3 totalKtr = Double3.ZERO;
+    private Double3 transparency(HitRecord record) {
+        // the head moves off the surface to the side of the light (-l)
+        List<Ray> shadowRays = record.light.generateRays(record.scratch.set(record.point)
+                .addScaled(record.normal, record.lNormal < 0 ? DELTA : -DELTA).toPoint());
+        if (shadowRays.isEmpty())
+            return Double3.ONE;
+        double lightDistance = record.light.getDistance(record.point);
+        // the shadow rays are summed on primitives, building only the average
+        double r = 0, g = 0, b = 0;
         for (Ray shadowRay : shadowRays) {
-            var intersections = scene.geometries.calculateIntersections(
-                    shadowRay,
-                    intersection.light.getDistance(intersection.point)
-            );
-            Double3 currentRayKtr = Double3.ONE;
-            if (intersections != null && !intersections.isEmpty()) {
-                for (Intersection shadowIntersection : intersections) {
-                    currentRayKtr = currentRayKtr.product(shadowIntersection.material.kT);
-                    if (currentRayKtr.lowerThan(MIN_CALC_COLOR_K)) {
-                        break;
-                    }
-                }
-            }
-            totalKtr = totalKtr.add(currentRayKtr);
+            Double3 ktr = geometries().calculateTransparency(shadowRay, lightDistance, MIN_CALC_COLOR_K);
+            r += ktr.d1();
+            g += ktr.d2();
+            b += ktr.d3();
         }
-        return shadowRays.isEmpty() ? Double3.ONE : totalKtr.reduce(shadowRays.size());
+        int count = shadowRays.size();
+        return new Double3(r / count, g / count, b / count);
     }
 
-//    private Double3 transparency(Intersection intersection) {
-//        Vector pointToLight = intersection.l.scale(-1);
-//        Ray shadowRay = new Ray(intersection.point, pointToLight, intersection.normal);
-//
-//        var intersections = scene.geometries.calculateIntersections(
-//                shadowRay,
-//                intersection.light.getDistance(intersection.point)
-//        );
-//
-//        if (intersections == null || intersections.isEmpty())
-//            return Double3.ONE;
-//
-//        Double3 ktr = Double3.ONE;
-//        for (Intersection shadowIntersection : intersections) {
-//            ktr = ktr.product(shadowIntersection.material.kT);
-//        }
-//
-//        return ktr;
-//    }
-
     /**
      * Finds the closest intersection point of a given ray with the scene geometries.
      *
@@ -298,7 +319,6 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return the closest intersection or null if none found
      */
     private Intersection findClosestIntersection(Ray ray) {
-        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
-        return (intersections == null) ? null : ray.findClosestIntersection(intersections);
+        return geometries().calculateClosestIntersection(ray);
     }
 }
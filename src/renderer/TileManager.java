@@ -0,0 +1,122 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TileManager is a helper class. It is used for multi-threading in the
+ * renderer and for follow up of its progress.<br/>
+ * The image is divided into rectangular tiles, which the rendering threads take
+ * one by one through an atomic counter - without locking and without allocating
+ * per pixel. The tiles are handed out in Morton (Z-curve) order, so consecutive
+ * tiles are close on the image and the rays they trace touch the same parts of the scene.
+ * Progress is counted and printed once per tile.
+ */
+class TileManager {
+    /**
+     * Immutable class for object containing a tile of pixels
+     * @param col    first pixel column of the tile
+     * @param row    first pixel row of the tile
+     * @param width  amount of pixel columns of the tile
+     * @param height amount of pixel rows of the tile
+     */
+    record Tile(int col, int row, int width, int height) {
+    }
+
+    /** The tiles, in the order they are handed out */
+    private final Tile[]        tiles;
+    /** Total amount of pixels in the generated image */
+    private final long          totalPixels;
+    /** Index of the next tile to hand out */
+    private final AtomicInteger next          = new AtomicInteger();
+    /** Amount of pixels that have been processed */
+    private final AtomicLong    pixels        = new AtomicLong();
+    /** Last printed progress update percentage, in tenths of a percent */
+    private final AtomicInteger lastPrinted   = new AtomicInteger();
+
+    /** Flag of debug printing of progress percentage */
+    private final boolean       print;
+    /** Progress percentage printing interval, in tenths of a percent */
+    private final long          printInterval;
+    /** Printing format */
+    private static final String PRINT_FORMAT  = "%5.1f%%\r";
+
+    /**
+     * Initialize tile manager data for multi-threading
+     * @param maxRows  the amount of pixel rows
+     * @param maxCols  the amount of pixel columns
+     * @param tileSize the size of a tile side, in pixels
+     * @param interval print interval in percents, 0 if printing is not required
+     * @throws IllegalArgumentException if the tile size is not positive
+     */
+    TileManager(int maxRows, int maxCols, int tileSize, double interval) {
+        if (tileSize <= 0) throw new IllegalArgumentException("Tile size must be positive");
+        int tileCols = (maxCols + tileSize - 1) / tileSize;
+        int tileRows = (maxRows + tileSize - 1) / tileSize;
+        tiles = new Tile[tileCols * tileRows];
+        for (int i = 0; i < tileRows; i++)
+            for (int j = 0; j < tileCols; j++)
+                tiles[i * tileCols + j] = new Tile(j * tileSize, i * tileSize,
+                        Math.min(tileSize, maxCols - j * tileSize), Math.min(tileSize, maxRows - i * tileSize));
+        Arrays.sort(tiles, Comparator.comparingLong(tile -> morton(tile.col() / tileSize, tile.row() / tileSize)));
+
+        totalPixels   = (long) maxRows * maxCols;
+        printInterval = (long) (interval * 10);
+        print         = printInterval != 0;
+        if (print) System.out.printf(PRINT_FORMAT, 0d);
+    }
+
+    /**
+     * Computes the Morton code of a tile - the bits of its column and row interleaved.
+     * @param col the tile column
+     * @param row the tile row
+     * @return the Morton code
+     */
+    private static long morton(int col, int row) {
+        long code = 0;
+        for (int bit = 0; bit < Integer.SIZE - 1; bit++)
+            code |= (col >> bit & 1L) << 2 * bit | (row >> bit & 1L) << 2 * bit + 1;
+        return code;
+    }
+
+    /**
+     * Provides the next tile to render. Thread safe, without locking.
+     * @return the next tile, or null if there are no more tiles
+     */
+    Tile nextTile() {
+        int index = next.getAndIncrement();
+        return index < tiles.length ? tiles[index] : null;
+    }
+
+    /**
+     * Returns a tile by its position in the rendering order, for schedulers distributing
+     * the tiles by themselves (e.g. parallel streams).
+     * @param index the position of the tile
+     * @return the tile
+     */
+    Tile getTile(int index) {
+        return tiles[index];
+    }
+
+    /**
+     * @return the amount of tiles
+     */
+    int getTileCount() {
+        return tiles.length;
+    }
+
+    /**
+     * Finish tile processing by updating and printing of progress percentage
+     * @param tile the rendered tile
+     */
+    void tileDone(Tile tile) {
+        long done = pixels.addAndGet((long) tile.width() * tile.height());
+        if (!print) return;
+        int percentage = (int) (1000L * done / totalPixels);
+        int last       = lastPrinted.get();
+        if (percentage - last >= printInterval && lastPrinted.compareAndSet(last, percentage))
+            System.out.printf(PRINT_FORMAT, percentage / 10d);
+    }
+}
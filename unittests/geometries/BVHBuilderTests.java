@@ -0,0 +1,224 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.BVHBuilder} class.
+ */
+class BVHBuilderTests {
+
+    /**
+     * Creates a collection of a cube of spheres, n x n x n, with unit spacing.
+     *
+     * @param n the amount of spheres along each axis
+     * @return the collection
+     */
+    private static Geometries sphereGrid(int n) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                for (int k = 0; k < n; k++)
+                    geometries.add(new Sphere(new Point(i * 3, j * 3, k * 3), 1));
+        return geometries;
+    }
+
+    /**
+     * Test method for {@link Geometries#createBVH(BVHBuilder)}.
+     * Verifies the reported tree statistics.
+     */
+    @Test
+    void testStatistics() {
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Full depth tree with leaf size threshold
+        Geometries geometries = sphereGrid(4);
+        BVHBuilder.Statistics statistics = geometries.createBVH(new BVHBuilder().setMaxLeafSize(2));
+        assertEquals(64, statistics.primitives(), "Wrong amount of primitives");
+        assertEquals(0, statistics.unbounded(), "Wrong amount of unbounded geometries");
+        assertTrue(statistics.leaves() >= 32, "Leaves must not hold more than the leaf size");
+        assertEquals(2 * statistics.leaves() - 1, statistics.nodes(), "Binary tree must have n-1 interior nodes");
+        assertTrue(statistics.maxDepth() >= 5, "Tree must be built to full depth");
+        assertTrue(statistics.sahCost() > 0, "SAH cost must be positive");
+        assertTrue(statistics.buildTimeNanos() > 0, "Build time must be measured");
+        assertSame(statistics, geometries.getBVHStatistics(), "Statistics must be kept by the geometries");
+
+        // TC02: Unbounded geometries stay outside the tree
+        geometries.add(new Plane(new Point(0, 0, -5), new Vector(0, 0, 1)));
+        statistics = geometries.createBVH();
+        assertEquals(64, statistics.primitives(), "Wrong amount of primitives");
+        assertEquals(1, statistics.unbounded(), "Wrong amount of unbounded geometries");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Empty collection
+        statistics = new Geometries().createBVH();
+        assertEquals(0, statistics.nodes(), "Empty collection must have no nodes");
+
+        // TC12: Coinciding primitives cannot be separated by SAH splits
+        Geometries same = new Geometries();
+        for (int i = 0; i < 10; i++)
+            same.add(new Sphere(new Point(1, 1, 1), 1));
+        statistics = same.createBVH(new BVHBuilder().setMaxLeafSize(1));
+        assertEquals(10, statistics.leaves(), "Coinciding primitives must still be split");
+    }
+
+    /**
+     * Test method for {@link Geometries#createBVH()}.
+     * Verifies the hierarchy finds the same intersections as the flat collection.
+     */
+    @Test
+    void testIntersectionsMatchFlat() {
+        Geometries flat = sphereGrid(5);
+        flat.add(new Plane(new Point(0, 0, -5), new Vector(0, 0, 1)));
+        Geometries bvh = sphereGrid(5);
+        bvh.add(new Plane(new Point(0, 0, -5), new Vector(0, 0, 1)));
+        bvh.createBVH();
+
+        Point origin = new Point(-10, -7, -3);
+        for (int i = 0; i < 10; i++)
+            for (int j = 0; j < 10; j++) {
+                Ray ray = new Ray(origin, new Vector(20, i * 1.7 + 0.3, j * 1.3 + 0.1));
+                List<Point> expected = flat.findIntersections(ray);
+                List<Point> actual = bvh.findIntersections(ray);
+                assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                        "BVH must find all the intersections");
+                var expectedClosest = flat.calculateClosestIntersection(ray);
+                var actualClosest = bvh.calculateClosestIntersection(ray);
+                assertEquals(expectedClosest == null ? null : expectedClosest.point,
+                        actualClosest == null ? null : actualClosest.point,
+                        "BVH must find the closest intersection");
+            }
+    }
+
+    /**
+     * Test method for {@link BVHBuilder#setParallel(boolean)}.
+     * Verifies the parallel build produces exactly the same tree as the sequential build.
+     */
+    @Test
+    void testParallelBuild() {
+        java.util.Random random = new java.util.Random(5785);
+        Intersectable[] primitives = new Intersectable[20000];
+        for (int i = 0; i < primitives.length; i++) {
+            primitives[i] = new Sphere(new Point(random.nextDouble() * 100, random.nextDouble() * 100,
+                    random.nextDouble() * 10), 0.1 + random.nextDouble());
+            primitives[i].createCBR();
+        }
+        Intersectable[] sequentialOrder = primitives.clone();
+        Intersectable[] parallelOrder = primitives.clone();
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Same nodes and same primitive order
+        BVHBuilder.Node sequential = new BVHBuilder().setParallel(false).buildTree(sequentialOrder);
+        BVHBuilder.Node parallel = new BVHBuilder().setParallel(true).buildTree(parallelOrder);
+        assertSameTree(sequential, parallel);
+        assertArrayEquals(sequentialOrder, parallelOrder, "Parallel build must order the primitives the same");
+    }
+
+    /**
+     * Asserts two built trees are identical.
+     *
+     * @param expected the expected node
+     * @param actual   the actual node
+     */
+    private static void assertSameTree(BVHBuilder.Node expected, BVHBuilder.Node actual) {
+        assertArrayEquals(expected.bounds, actual.bounds, "Node bounds must match");
+        assertEquals(expected.start, actual.start, "Node range must match");
+        assertEquals(expected.count, actual.count, "Node size must match");
+        assertEquals(expected.isLeaf(), actual.isLeaf(), "Node kind must match");
+        if (!expected.isLeaf()) {
+            assertEquals(expected.axis, actual.axis, "Split axis must match");
+            assertSameTree(expected.left, actual.left);
+            assertSameTree(expected.right, actual.right);
+        }
+    }
+
+    /**
+     * Test method for {@link BVHBuilder#setSpatialSplitBudget(double)}.
+     * Verifies spatial splits lower the cost of overlapping sliver triangles and keep the intersections.
+     */
+    @Test
+    void testSpatialSplits() {
+        // long diagonal slivers - their boxes overlap heavily
+        Geometries flat = new Geometries();
+        for (int i = 0; i < 60; i++)
+            flat.add(new Triangle(new Point(i, 0, 0), new Point(i + 0.2, 0, 0), new Point(i + 40, 40, 1))
+                    .setMaterial(new Material().setKT(0.5)));
+        Geometries objectSplits = new Geometries(flat);
+        Geometries spatialSplits = new Geometries(flat);
+        BVHBuilder.Statistics object = objectSplits.compileBVH(new BVHBuilder().setMaxLeafSize(2));
+        BVHBuilder.Statistics spatial = spatialSplits.compileBVH(
+                new BVHBuilder().setMaxLeafSize(2).setSpatialSplitBudget(1));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Spatial splits lower the SAH cost
+        assertEquals(60, spatial.primitives(), "Duplicated references must not be counted as primitives");
+        assertTrue(spatial.sahCost() < object.sahCost(), "Spatial splits must lower the SAH cost");
+
+        // TC02: Same intersections, each primitive found once, and the same transparency
+        for (int i = 0; i < 20; i++)
+            for (int j = 0; j < 5; j++) {
+                Ray ray = new Ray(new Point(i * 4 + 0.3, j * 8 + 0.7, 5), new Vector(0.1 * j, 0.2, -1));
+                List<Point> expected = flat.findIntersections(ray);
+                List<Point> actual = spatialSplits.findIntersections(ray);
+                assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                        "Spatial BVH must find every intersection once");
+                var expectedClosest = flat.calculateClosestIntersection(ray);
+                var actualClosest = spatialSplits.calculateClosestIntersection(ray);
+                assertEquals(expectedClosest == null ? null : expectedClosest.point,
+                        actualClosest == null ? null : actualClosest.point,
+                        "Spatial BVH must find the closest intersection");
+                assertEquals(flat.calculateTransparency(ray, 100, 0), spatialSplits.calculateTransparency(ray, 100, 0),
+                        "Spatial BVH must attenuate once per primitive");
+            }
+
+        // TC03: Recompiling the spatial BVH does not duplicate the primitives
+        assertEquals(60, spatialSplits.compileBVH().primitives(), "Recompiled BVH must hold the distinct primitives");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Negative budget
+        assertThrows(IllegalArgumentException.class, () -> new BVHBuilder().setSpatialSplitBudget(-0.1),
+                "Negative budget must be rejected");
+
+        // TC12: Budget above the maximum, or not finite
+        assertThrows(IllegalArgumentException.class,
+                () -> new BVHBuilder().setSpatialSplitBudget(BVHBuilder.MAX_SPATIAL_SPLIT_BUDGET + 1),
+                "Budget above the maximum must be rejected");
+        assertThrows(IllegalArgumentException.class,
+                () -> new BVHBuilder().setSpatialSplitBudget(Double.POSITIVE_INFINITY),
+                "Infinite budget must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> new BVHBuilder().setSpatialSplitBudget(Double.NaN),
+                "NaN budget must be rejected");
+
+        // TC13: The whole budget on a few primitives
+        Geometries small = new Geometries();
+        for (int i = 0; i < 10; i++)
+            small.add(new Triangle(new Point(i, 0, 0), new Point(i + 0.2, 0, 0), new Point(i + 40, 40, 1)));
+        assertEquals(10, small.compileBVH(new BVHBuilder().setMaxLeafSize(1)
+                        .setSpatialSplitBudget(BVHBuilder.MAX_SPATIAL_SPLIT_BUDGET)).primitives(),
+                "Maximal budget must build the hierarchy");
+    }
+
+    /**
+     * Test method for {@link BVHBuilder#setBinCount(int)} and {@link BVHBuilder#setMaxLeafSize(int)}.
+     */
+    @Test
+    void testSettings() {
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Less than two bins
+        assertThrows(IllegalArgumentException.class, () -> new BVHBuilder().setBinCount(1),
+                "Less than two bins must be rejected");
+
+        // TC12: Empty leaves
+        assertThrows(IllegalArgumentException.class, () -> new BVHBuilder().setMaxLeafSize(0),
+                "Leaf size below one must be rejected");
+    }
+}
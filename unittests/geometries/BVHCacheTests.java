@@ -0,0 +1,115 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.BVHCache} class.
+ */
+class BVHCacheTests {
+
+    /**
+     * Creates a collection of spheres on a grid, with a ground plane.
+     *
+     * @param radius the radius of the spheres
+     * @return the collection
+     */
+    private static Geometries scene(double radius) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 8; i++)
+            for (int j = 0; j < 8; j++)
+                geometries.add(new Sphere(new Point(i * 3, j * 3, 0), radius));
+        geometries.add(new Plane(new Point(0, 0, -2), new Vector(0, 0, 1)));
+        return geometries;
+    }
+
+    /**
+     * Counts the cache files in a directory.
+     *
+     * @param directory the cache directory
+     * @return amount of files
+     * @throws IOException if the directory cannot be listed
+     */
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Test method for {@link Geometries#compileBVH(BVHBuilder, BVHCache)}.
+     *
+     * @throws IOException if the temporary cache directory cannot be used
+     */
+    @Test
+    void testCompileWithCache() throws IOException {
+        Path directory = Files.createTempDirectory("bvh-cache");
+        BVHCache cache = new BVHCache(directory);
+        BVHBuilder builder = new BVHBuilder().setMaxLeafSize(2);
+        Ray ray = new Ray(new Point(-5, 3.2, 0.5), new Vector(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: First compilation builds the hierarchy and stores it
+        Geometries built = scene(1);
+        BVHBuilder.Statistics expected = built.compileBVH(builder, cache);
+        assertEquals(1, countFiles(directory), "Compiled hierarchy must be stored");
+
+        // TC02: Unchanged scene loads the same hierarchy
+        Geometries loaded = scene(1);
+        BVHBuilder.Statistics actual = loaded.compileBVH(builder, cache);
+        assertEquals(1, countFiles(directory), "Cached hierarchy must be reused");
+        assertEquals(expected.nodes(), actual.nodes(), "Loaded hierarchy must have the same nodes");
+        assertEquals(expected.maxDepth(), actual.maxDepth(), "Loaded hierarchy must have the same depth");
+        assertEquals(expected.sahCost(), actual.sahCost(), 1e-10, "Loaded hierarchy must have the same cost");
+        assertEquals(1, actual.unbounded(), "Unbounded geometries must stay outside the hierarchy");
+        assertEquals(built.calculateIntersections(ray).size(), loaded.calculateIntersections(ray).size(),
+                "Loaded hierarchy must find the same intersections");
+        assertEquals(built.calculateClosestIntersection(ray).point, loaded.calculateClosestIntersection(ray).point,
+                "Loaded hierarchy must find the same closest intersection");
+
+        // TC03: Changed geometry misses the cache and stores another hierarchy
+        scene(1.2).compileBVH(builder, cache);
+        assertEquals(2, countFiles(directory), "Changed scene must be stored separately");
+
+        // TC04: Changed builder settings miss the cache
+        scene(1).compileBVH(new BVHBuilder(), cache);
+        assertEquals(3, countFiles(directory), "Changed settings must be stored separately");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Corrupt cache file is rebuilt and rewritten
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList())
+                Files.write(file, new byte[]{1, 2, 3});
+        }
+        Geometries rebuilt = scene(1);
+        assertEquals(expected.nodes(), rebuilt.compileBVH(builder, cache).nodes(), "Corrupt cache must be rebuilt");
+        assertEquals(built.calculateIntersections(ray).size(), rebuilt.calculateIntersections(ray).size(),
+                "Rebuilt hierarchy must find the same intersections");
+        assertEquals(expected.nodes(), scene(1).compileBVH(builder, cache).nodes(), "Rewritten cache must load");
+
+        // TC12: Spatial splits bypass the cache
+        long files = countFiles(directory);
+        Geometries spatial = scene(1);
+        spatial.compileBVH(new BVHBuilder().setSpatialSplitBudget(0.5), cache);
+        assertEquals(files, countFiles(directory), "Spatial split hierarchy must not be cached");
+        assertEquals(built.calculateIntersections(ray).size(), spatial.calculateIntersections(ray).size(),
+                "Spatial split hierarchy must find the same intersections");
+
+        // TC13: Unwritable cache - the hierarchy is still compiled
+        Path file = Files.createTempFile("bvh-cache", ".file");
+        Geometries uncached = scene(1);
+        assertEquals(expected.nodes(), uncached.compileBVH(builder, new BVHCache(file)).nodes(),
+                "Hierarchy must be compiled without the cache");
+        assertEquals(built.calculateIntersections(ray).size(), uncached.calculateIntersections(ray).size(),
+                "Uncached hierarchy must find the same intersections");
+    }
+}
@@ -0,0 +1,108 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static geometries.IntersectionAssertions.size;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.CompactBVH} class.
+ */
+class CompactBVHTests {
+
+    /**
+     * Creates a collection of random semi-transparent spheres and triangles, with a ground plane.
+     *
+     * @return the collection
+     */
+    private static Geometries scene() {
+        Random random = new Random(2734);
+        Geometries geometries = new Geometries();
+        Material material = new Material().setKT(0.5);
+        for (int i = 0; i < 400; i++) {
+            Point p = new Point(random.nextDouble() * 50, random.nextDouble() * 50, random.nextDouble() * 10);
+            if (i % 2 == 0)
+                geometries.add(new Sphere(p, 0.2 + random.nextDouble()).setMaterial(material));
+            else
+                geometries.add(new Triangle(p, p.add(new Vector(2, 0.1, 0)), p.add(new Vector(0.3, 1.5, 1)))
+                        .setMaterial(material));
+        }
+        geometries.add(new Plane(new Point(0, 0, -1), new Vector(0, 0, 1)));
+        return geometries;
+    }
+
+    /**
+     * Asserts two collections find the same intersections for a fan of rays.
+     *
+     * @param expected the reference collection
+     * @param actual   the tested collection
+     */
+    private static void assertSameIntersections(Geometries expected, Geometries actual) {
+        Point origin = new Point(-5, -5, 20);
+        for (int i = 0; i < 15; i++)
+            for (int j = 0; j < 15; j++) {
+                Ray ray = new Ray(origin, new Vector(10 + i * 4, 10 + j * 4, -15));
+                assertEquals(size(expected.calculateIntersections(ray)), size(actual.calculateIntersections(ray)),
+                        "Compact BVH must find all the intersections");
+                var expectedClosest = expected.calculateClosestIntersection(ray);
+                var actualClosest = actual.calculateClosestIntersection(ray);
+                assertEquals(expectedClosest == null ? null : expectedClosest.point,
+                        actualClosest == null ? null : actualClosest.point,
+                        "Compact BVH must find the closest intersection");
+                assertEquals(expected.calculateTransparency(ray, 40, 0), actual.calculateTransparency(ray, 40, 0),
+                        "Compact BVH must find the same transparency");
+            }
+    }
+
+    /**
+     * Test method for {@link Geometries#compileCompactBVH(BVHBuilder)}.
+     */
+    @Test
+    void testCompileCompactBVH() {
+        Geometries flat = scene();
+        Geometries compact = scene();
+        compact.compileCompactBVH();
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Same intersections as the flat collection
+        assertSameIntersections(flat, compact);
+
+        // TC02: Wide quantized nodes take several times less memory
+        Intersectable[] primitives = new Intersectable[400];
+        for (int i = 0; i < primitives.length; i++)
+            primitives[i] = new Sphere(new Point(i % 20 * 3, i / 20 * 3, i % 7), 1);
+        for (Intersectable primitive : primitives)
+            primitive.createCBR();
+        BVHBuilder.Tree tree = new BVHBuilder().buildLinearTree(primitives);
+        LinearBVH linearBVH = new LinearBVH(tree.root(), tree.references(primitives));
+        CompactBVH compactBVH = new CompactBVH(tree.root(), tree.references(primitives));
+        assertEquals(400, compactBVH.getPrimitiveCount(), "Wrong amount of primitives");
+        assertTrue(compactBVH.getNodeBytes() * 3 < linearBVH.getNodeBytes(),
+                "Compact BVH must take at least 3 times less memory");
+
+        // TC03: Spatial splits (duplicated references)
+        Geometries spatial = scene();
+        spatial.compileCompactBVH(new BVHBuilder().setSpatialSplitBudget(0.5));
+        assertSameIntersections(flat, spatial);
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: A single primitive - the root is a leaf
+        Geometries single = new Geometries(new Sphere(new Point(1, 2, 3), 1));
+        single.compileCompactBVH();
+        assertEquals(2, size(single.calculateIntersections(new Ray(new Point(1, 2, -5), new Vector(0, 0, 1)))),
+                "Single leaf must be intersected");
+
+        // TC12: Leaf larger than a leaf size byte
+        Geometries large = new Geometries();
+        for (int i = 0; i < 300; i++)
+            large.add(new Sphere(new Point(i, 0, 0), 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> large.compileCompactBVH(new BVHBuilder().setMaxLeafSize(300)),
+                "Leaves over 256 primitives must be rejected");
+    }
+}
@@ -120,6 +120,46 @@ class GeometriesTest {
     }
 
 
+    /**
+     * Test method for {@link Geometries#calculateClosestIntersection(Ray)}.
+     * Verifies the front to back traversal returns the closest hit, with and without bounding boxes.
+     */
+    @Test
+    void testCalculateClosestIntersection() {
+        Geometries geometries = new Geometries(
+                new Sphere(new Point(0, 0, 10), 1),
+                new Sphere(new Point(0, 0, 5), 1),
+                new Triangle(new Point(-2, -2, 2), new Point(2, -2, 2), new Point(0, 2, 2)),
+                new Plane(new Point(0, 0, 20), new Vector(0, 0, 1)));
+        Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Closest of several geometries without bounding boxes
+        assertEquals(new Point(0, 0, 2), geometries.calculateClosestIntersection(ray).point,
+                "Error: Wrong closest intersection");
+
+        // TC02: Closest of several geometries with bounding boxes
+        geometries.createCBR();
+        assertEquals(new Point(0, 0, 2), geometries.calculateClosestIntersection(ray).point,
+                "Error: Wrong closest intersection with CBR");
+
+        // TC03: Closest within a hierarchy
+        geometries.createBVH();
+        assertEquals(new Point(0, 0, 2), geometries.calculateClosestIntersection(ray).point,
+                "Error: Wrong closest intersection with BVH");
+
+        // TC04: Ray misses all the geometries
+        assertNull(geometries.calculateClosestIntersection(new Ray(Point.ZERO, new Vector(0, 0, -1))),
+                "Error: Expected null when the ray misses all geometries");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Maximum distance before the closest geometry
+        assertNull(geometries.calculateClosestIntersection(ray, 1.5),
+                "Error: Expected null when all hits are beyond the maximum distance");
+    }
+
     @Test
     void testCreateBoundingBoxHelper() {
         Geometries geometries = new Geometries();
@@ -135,6 +175,85 @@ class GeometriesTest {
         assertNull(geometries.createCBR());
     }
 
+    /**
+     * Test method for {@link Geometries#createCBR()} with unbounded geometries in the collection.
+     * Verifies the bounded children are still boxed and culled, while the plane is always tested.
+     */
+    @Test
+    void testUnboundedChildren() {
+        Sphere sphere1 = new Sphere(new Point(0, 0, 5), 1);
+        Sphere sphere2 = new Sphere(new Point(4, 0, 5), 1);
+        Geometries geometries = new Geometries(
+                sphere1,
+                new Plane(new Point(0, 0, -5), new Vector(0, 0, 1)),
+                sphere2);
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: The collection is unbounded, but every bounded child gets its box
+        assertNull(geometries.createCBR(), "Error: Collection with a plane must be unbounded");
+        assertNotNull(sphere1.getBoundingBox(), "Error: Child before the plane must be boxed");
+        assertNotNull(sphere2.getBoundingBox(), "Error: Child after the plane must be boxed");
+
+        // TC02: Ray through the bounded children - the closest of all
+        Ray ray = new Ray(new Point(4, 0, 10), new Vector(0, 0, -1));
+        assertEquals(new Point(4, 0, 6), geometries.calculateClosestIntersection(ray).point,
+                "Error: Wrong closest intersection with a plane in the collection");
+        assertEquals(3, geometries.calculateIntersections(ray).size(), "Error: Wrong amount of intersections");
+
+        // TC03: Ray missing the bounded children still hits the plane
+        ray = new Ray(new Point(20, 0, 10), new Vector(0, 0, -1));
+        assertEquals(new Point(20, 0, -5), geometries.calculateClosestIntersection(ray).point,
+                "Error: Plane must be tested when the bounded children are missed");
+        assertEquals(1, geometries.calculateIntersections(ray).size(), "Error: Only the plane must be hit");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Adding a geometry drops the stale boxes
+        geometries.add(new Sphere(new Point(20, 0, 5), 1));
+        assertEquals(new Point(20, 0, 6), geometries.calculateClosestIntersection(ray).point,
+                "Error: Added geometry must not be culled by a stale box");
+    }
+
+    /**
+     * Test method for {@link Geometries#calculateTransparency(Ray, double, double)}.
+     * Verifies the transparency coefficients are multiplied along the ray and the search stops at opaque blockers.
+     */
+    @Test
+    void testCalculateTransparency() {
+        final double minK = 0.001;
+        Geometries geometries = new Geometries(
+                new Sphere(new Point(0, 0, 10), 1).setMaterial(new Material().setKT(0.5)),
+                new Triangle(new Point(-2, -2, 5), new Point(2, -2, 5), new Point(0, 2, 5))
+                        .setMaterial(new Material().setKT(0.4)),
+                new Sphere(new Point(0, 0, 20), 1));
+        Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Transparent blockers only - both sphere surfaces and the triangle
+        assertEquals(new Double3(0.1), geometries.calculateTransparency(ray, 15, minK),
+                "Error: Wrong product of transparent blockers");
+        assertFalse(geometries.occluded(ray, 15, minK), "Error: Transparent blockers must not occlude");
+
+        // TC02: Opaque blocker behind the transparent ones
+        assertTrue(geometries.calculateTransparency(ray, 30, minK).lowerThan(minK),
+                "Error: Opaque blocker must block the ray");
+        assertTrue(geometries.occluded(ray, 30, minK), "Error: Opaque blocker must occlude");
+
+        // TC03: Same results within a hierarchy
+        geometries.compileBVH();
+        assertEquals(new Double3(0.1), geometries.calculateTransparency(ray, 15, minK),
+                "Error: Wrong product of transparent blockers with BVH");
+        assertTrue(geometries.occluded(ray, 30, minK), "Error: Opaque blocker must occlude with BVH");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: No blockers within the distance
+        assertEquals(Double3.ONE, geometries.calculateTransparency(ray, 4, minK),
+                "Error: Expected full transparency before the first blocker");
+    }
+
     @Test
     void testFindIntersectionsWithBVH() {
         Geometries geometries = new Geometries();
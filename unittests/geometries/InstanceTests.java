@@ -0,0 +1,109 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.Instance} class.
+ */
+class InstanceTests {
+
+    /**
+     * Delta value for accuracy when comparing the numbers of type 'double' in assertEquals
+     */
+    private static final double DELTA = 0.000001;
+
+    /**
+     * Creates the shared object - a unit sphere at the origin with a triangle above it.
+     *
+     * @return the compiled object
+     */
+    private static Geometries object() {
+        Geometries object = new Geometries(
+                new Sphere(Point.ZERO, 1).setMaterial(new Material().setKT(0.5)),
+                new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2)));
+        object.compileBVH();
+        return object;
+    }
+
+    /**
+     * Test method for {@link Instance#calculateClosestIntersection(Ray)}.
+     */
+    @Test
+    void testCalculateClosestIntersection() {
+        // scaled by 2 and moved to (5, 0, 0): a sphere of radius 2 at (5, 0, 0)
+        Instance instance = new Instance(object(),
+                Transform.scaling(2).then(Transform.translation(new Vector(5, 0, 0))));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Ray hits the transformed sphere - scene-space point, distance and normal
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(1, 0, 0));
+        Intersectable.Intersection hit = instance.calculateClosestIntersection(ray);
+        assertEquals(new Point(3, 0, 0), hit.point, "Wrong scene-space point");
+        assertEquals(3, hit.distance, DELTA, "Wrong scene-space distance");
+        assertEquals(new Vector(-1, 0, 0), hit.geometry.getNormal(hit.point), "Wrong scene-space normal");
+        assertEquals(new Double3(0.5), hit.material.kT, "Material must be shared with the object");
+
+        // TC02: All the intersections are converted to scene space
+        assertEquals(2, instance.calculateIntersections(ray).size(), "Wrong amount of intersections");
+        assertEquals(new Point(7, 0, 0), instance.calculateIntersections(ray).get(1).point,
+                "Wrong scene-space point of the far intersection");
+
+        // TC03: Rotated instance - the triangle above the sphere turns to the side
+        Instance rotated = new Instance(object(), Transform.rotation(new Vector(0, 1, 0), 90));
+        hit = rotated.calculateClosestIntersection(new Ray(new Point(10, 0, 0), new Vector(-1, 0, 0)));
+        assertEquals(new Point(2, 0, 0), hit.point, "Wrong point on the rotated triangle");
+        assertEquals(8, hit.distance, DELTA, "Wrong distance to the rotated triangle");
+
+        // TC04: Transparency along a ray through the transformed sphere
+        assertEquals(new Double3(0.25), instance.calculateTransparency(ray, 10, 0.001),
+                "Wrong transparency through the instance");
+
+        // TC05: The intersected geometry is intersected again in scene space
+        hit = instance.calculateClosestIntersection(ray);
+        var again = hit.geometry.calculateIntersections(ray);
+        assertEquals(2, again.size(), "Wrong amount of intersections of the intersected geometry");
+        assertEquals(new Point(3, 0, 0), again.get(0).point, "Wrong scene-space point of the intersected geometry");
+        assertEquals(new Point(7, 0, 0), again.get(1).point, "Wrong scene-space point of the intersected geometry");
+
+        // TC06: Instance of instances - the hit of the nearer instance is kept after the farther one is missed
+        Geometries pair = new Geometries(instance, new Instance(object(), Transform.translation(new Vector(20, 0, 0))));
+        pair.compileBVH();
+        Instance nested = new Instance(pair, Transform.translation(new Vector(0, 0, 1)));
+        hit = nested.calculateClosestIntersection(new Ray(new Point(0, 0, 1), new Vector(1, 0, 0)));
+        assertEquals(new Point(3, 0, 1), hit.point, "Wrong point on the nested instance");
+        assertEquals(new Vector(-1, 0, 0), hit.geometry.getNormal(hit.point), "Wrong normal on the nested instance");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: The maximal distance is measured in scene space
+        assertNull(instance.calculateClosestIntersection(ray, 2.5), "Hit beyond the scene-space distance");
+        assertNotNull(instance.calculateClosestIntersection(ray, 3.5), "Hit within the scene-space distance");
+    }
+
+    /**
+     * Test method for {@link Geometries#compileBVH()} over instances - the top-level hierarchy.
+     */
+    @Test
+    void testTopLevelHierarchy() {
+        Geometries object = object();
+        Geometries scene = new Geometries();
+        for (int i = 0; i < 10; i++)
+            for (int j = 0; j < 10; j++)
+                scene.add(new Instance(object, Transform.translation(i * 5, j * 5, 0)));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: The instances are the primitives of the top-level hierarchy
+        assertEquals(100, scene.compileBVH().primitives(), "Instances must not be flattened");
+        assertEquals(new AABB(-1, -1, -1, 46, 46, 2), scene.getBoundingBox(), "Wrong scene bounding box");
+
+        // TC02: Ray down onto one of the instances hits its triangle first
+        Intersectable.Intersection hit = scene.calculateClosestIntersection(
+                new Ray(new Point(20, 20, 10), new Vector(0, 0, -1)));
+        assertEquals(new Point(20, 20, 2), hit.point, "Wrong closest instance hit");
+    }
+}
@@ -0,0 +1,67 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Shared scenes and assertions of the acceleration structure tests.
+ */
+final class IntersectionAssertions {
+    /** Private constructor to prevent instantiation */
+    private IntersectionAssertions() {
+    }
+
+    /**
+     * Creates a collection of spheres and triangles scattered on a grid, with a ground plane.
+     *
+     * @param stretch the length added to the triangles of every other column
+     * @return the collection
+     */
+    static Geometries scatteredScene(double stretch) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 6; i++)
+            for (int j = 0; j < 6; j++) {
+                geometries.add(new Sphere(new Point(i * 4, j * 4, 2), 1 + (i + j) % 3 * 0.3));
+                geometries.add(new Triangle(new Point(i * 4 + 1, j * 4, 5),
+                        new Point(i * 4 + 3 + (i % 2) * stretch, j * 4, 5), new Point(i * 4 + 2, j * 4 + 2, 6)));
+            }
+        geometries.add(new Plane(new Point(0, 0, -1), new Vector(0, 0, 1)));
+        return geometries;
+    }
+
+    /**
+     * Returns the size of a list of intersections, which may be null.
+     *
+     * @param list the list
+     * @return the size of the list, 0 for null
+     */
+    static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Asserts a compiled scattered scene finds the same intersections as the flat one, for a fan of rays.
+     *
+     * @param flat      the flat collection
+     * @param compiled  the compiled collection
+     * @param structure name of the acceleration structure, for the messages
+     */
+    static void assertMatchesFlat(Geometries flat, Geometries compiled, String structure) {
+        Point origin = new Point(-5, -5, 12);
+        for (int i = 0; i < 12; i++)
+            for (int j = 0; j < 12; j++) {
+                Ray ray = new Ray(origin, new Vector(i * 2.5 + 0.5, j * 2.5 + 0.5, -10));
+                assertEquals(size(flat.findIntersections(ray)), size(compiled.findIntersections(ray)),
+                        structure + " must find every intersection exactly once");
+                assertEquals(flat.calculateClosestIntersection(ray).point,
+                        compiled.calculateClosestIntersection(ray).point,
+                        structure + " must find the closest intersection");
+                assertEquals(size(flat.calculateIntersections(ray, 13)),
+                        size(compiled.calculateIntersections(ray, 13)),
+                        structure + " must respect the maximum distance");
+            }
+    }
+}
@@ -0,0 +1,146 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static geometries.IntersectionAssertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.LinearBVH} class.
+ */
+class LinearBVHTests {
+
+    /**
+     * Test method for {@link Geometries#compileBVH()}.
+     * Verifies the compiled hierarchy finds the same intersections as the flat collection.
+     */
+    @Test
+    void testIntersectionsMatchFlat() {
+        Geometries flat = scatteredScene(0);
+        Geometries compiled = scatteredScene(0);
+        BVHBuilder.Statistics statistics = compiled.compileBVH();
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Compiled hierarchy replaces the bounded geometries, the plane stays outside
+        assertEquals(2, compiled.getGeometriesSize(), "Compiled collection must hold the BVH and the plane");
+        assertEquals(1, statistics.unbounded(), "Wrong amount of unbounded geometries");
+
+        // TC02: Same intersections and closest intersection for a fan of rays
+        assertMatchesFlat(flat, compiled, "Compiled BVH");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Recompiling a compiled collection keeps all the primitives
+        statistics = compiled.compileBVH(new BVHBuilder().setMaxLeafSize(1));
+        assertEquals(72, statistics.primitives(), "Recompiling must keep all the primitives");
+        assertEquals(72, statistics.leaves(), "Leaf size threshold must be respected");
+    }
+
+    /**
+     * Test method for {@link Geometries#refitBVH(BVHBuilder)}.
+     * Verifies a refitted hierarchy follows moving instances, and degrades into a rebuild.
+     */
+    @Test
+    void testRefit() {
+        Geometries object = new Geometries(new Sphere(Point.ZERO, 1));
+        object.compileBVH();
+        Instance[] instances = new Instance[16];
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = new Instance(object, Transform.translation(i * 3, 0, 0));
+            geometries.add(instances[i]);
+        }
+        BVHBuilder builder = new BVHBuilder().setMaxLeafSize(1);
+        geometries.compileBVH(builder);
+        double builtCost = geometries.getBVHStatistics().sahCost();
+        Ray ray = new Ray(new Point(-5, 0.5, 0), new Vector(1, 0, 0));
+        Ray lifted = new Ray(new Point(-5, 0.5, 1), new Vector(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: A small move keeps the topology and the refitted bounds follow the instances
+        for (int i = 0; i < instances.length; i++)
+            instances[i].setTransform(Transform.translation(i * 3, 0, 1));
+        assertTrue(geometries.refitBVH(builder), "Small move must be refitted");
+        assertEquals(builtCost, geometries.getBVHStatistics().sahCost(), 1e-10, "Translation must keep the cost");
+        assertNull(geometries.calculateIntersections(ray), "Refitted hierarchy must not hit the old positions");
+        assertEquals(32, size(geometries.calculateIntersections(lifted)), "Refitted hierarchy must hit the new positions");
+
+        // TC02: Shuffling the instances degrades the tree past the threshold, so it is rebuilt
+        for (int i = 0; i < instances.length; i++)
+            instances[i].setTransform(Transform.translation(i * 7 % 16 * 3, (i % 2) * 40, 1));
+        assertFalse(geometries.refitBVH(builder.setRebuildThreshold(1.1)), "Degraded tree must be rebuilt");
+        assertEquals(16, size(geometries.calculateIntersections(lifted)), "Rebuilt hierarchy must hit the new positions");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Nothing compiled yet
+        assertFalse(new Geometries(new Sphere(Point.ZERO, 1)).refitBVH(), "Uncompiled collection must be built");
+
+        // TC12: Threshold below one
+        assertThrows(IllegalArgumentException.class, () -> new BVHBuilder().setRebuildThreshold(0.5),
+                "Threshold below one must be rejected");
+    }
+
+    /**
+     * Test method for {@link Intersectable#calculateClosestIntersections(Ray[])}.
+     * Verifies packet traversal finds the closest intersection of every ray, as single rays do.
+     */
+    @Test
+    void testPacketTraversal() {
+        Geometries compiled = scatteredScene(0);
+        compiled.compileBVH(new BVHBuilder().setMaxLeafSize(1));
+        Point origin = new Point(-5, -5, 12);
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Coherent packets, partly hitting, partly missing and partly reaching the plane only
+        for (int p = 0; p < 8; p++) {
+            Ray[] packet = new Ray[16];
+            for (int r = 0; r < packet.length; r++)
+                packet[r] = new Ray(origin, new Vector(10 + p * 4 + r % 4 * 0.7, 10 + p * 3 + r / 4 * 0.7, -8));
+            Intersectable.Intersection[] closest = compiled.calculateClosestIntersections(packet);
+            for (int r = 0; r < packet.length; r++) {
+                Intersectable.Intersection expected = compiled.calculateClosestIntersection(packet[r]);
+                assertEquals(expected == null ? null : expected.point, closest[r] == null ? null : closest[r].point,
+                        "Packet must find the closest intersection of every ray");
+            }
+        }
+
+        // TC02: Incoherent packet - rays in opposite directions
+        Ray[] packet = {new Ray(new Point(10, 10, 2), new Vector(1, 0, 0)),
+                new Ray(new Point(10, 10, 2), new Vector(-1, 0, 0)), new Ray(new Point(10, 10, 20), new Vector(0, 0, 1))};
+        Intersectable.Intersection[] closest = compiled.calculateClosestIntersections(packet);
+        for (int r = 0; r < packet.length; r++) {
+            Intersectable.Intersection expected = compiled.calculateClosestIntersection(packet[r]);
+            assertEquals(expected == null ? null : expected.point, closest[r] == null ? null : closest[r].point,
+                    "Packet must find the closest intersection of every ray");
+        }
+
+        // TC03: Packet held in the first rays of a longer array
+        Ray[] array = {packet[0], packet[2], null};
+        closest = compiled.calculateClosestIntersections(array, 2);
+        assertEquals(2, closest.length, "Packet must have a result for each of its rays only");
+        for (int r = 0; r < 2; r++) {
+            Intersectable.Intersection expected = compiled.calculateClosestIntersection(array[r]);
+            assertEquals(expected == null ? null : expected.point, closest[r] == null ? null : closest[r].point,
+                    "Packet must find the closest intersection of every ray");
+        }
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Empty packet
+        assertEquals(0, compiled.calculateClosestIntersections(new Ray[0]).length, "Empty packet has no results");
+
+        // TC12: Packet larger than the mask
+        assertThrows(IllegalArgumentException.class,
+                () -> compiled.calculateClosestIntersections(new Ray[Intersectable.MAX_PACKET_SIZE + 1]),
+                "Too large packet must be rejected");
+
+        // TC13: Packet size beyond the array
+        assertThrows(IllegalArgumentException.class, () -> compiled.calculateClosestIntersections(array, 4),
+                "Packet larger than its array must be rejected");
+    }
+}
@@ -0,0 +1,120 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import static geometries.IntersectionAssertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.RegularGrid} class.
+ */
+class RegularGridTests {
+
+    /**
+     * Creates a collection with a slanted semi-transparent triangle reaching across the grid along x,
+     * a semi-transparent sphere in front of the far part of the triangle, and opaque spheres aside
+     * so that the grid has several voxels along every axis.
+     * The ray from (-1, 0.5, 0.5) along x hits the sphere at x = 3.5 and the triangle at x = 7.125.
+     *
+     * @return the collection
+     */
+    private static Geometries walkScene() {
+        Material material = new Material().setKT(0.5);
+        Geometries geometries = new Geometries(
+                new Triangle(new Point(9, -2, -2), new Point(9, 4, -2), new Point(0, 1, 10)).setMaterial(material),
+                new Sphere(new Point(4, 0.5, 0.5), 0.5).setMaterial(material));
+        for (int i = 0; i < 10; i++)
+            for (int j = 0; j < 4; j++)
+                geometries.add(new Sphere(new Point(i, 6 + j, 0), 0.3));
+        return geometries;
+    }
+
+    /**
+     * Test method for {@link Geometries#compileGrid()}.
+     * Verifies the voxel walk, the mailboxes and the flat axes of the grid.
+     */
+    @Test
+    void testWalk() {
+        Geometries flat = walkScene();
+        Geometries compiled = walkScene();
+        RegularGrid grid = compiled.compileGrid();
+        Ray ray = new Ray(new Point(-1, 0.5, 0.5), new Vector(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: The triangle is referenced by every voxel its box overlaps
+        assertEquals(1, compiled.getGeometriesSize(), "Compiled collection must hold the grid only");
+        assertTrue(grid.getResolution(0) > 1 && grid.getResolution(1) > 1 && grid.getResolution(2) > 1,
+                "Resolution must grow with the amount of primitives");
+        assertTrue(grid.getReferenceCount() > 42, "Long triangle must be referenced by several voxels");
+
+        // TC02: The triangle is tested in the first voxel, its hit lies beyond - the walk goes on to the sphere
+        assertEquals(new Point(3.5, 0.5, 0.5), compiled.calculateClosestIntersection(ray).point,
+                "Grid must not stop at a hit beyond the current voxel");
+
+        // TC03: The triangle is found once, although the ray walks through several of its voxels (mailbox)
+        assertEquals(3, size(compiled.calculateIntersections(ray)), "Grid must test every primitive once per ray");
+        assertEquals(flat.calculateTransparency(ray, 100, 0), compiled.calculateTransparency(ray, 100, 0),
+                "Grid must attenuate once per primitive");
+
+        // TC04: Rays walking the grid in every direction find the same intersections as the flat collection
+        for (int i = 0; i < 8; i++)
+            for (int j = 0; j < 8; j++) {
+                Ray fan = new Ray(new Point(4.5, 4, 4), new Vector(Math.cos(i * 0.8), Math.sin(i * 0.8), j - 3.5));
+                assertEquals(size(flat.calculateIntersections(fan)), size(compiled.calculateIntersections(fan)),
+                        "Grid must find every intersection exactly once");
+                var expected = flat.calculateClosestIntersection(fan);
+                var actual = compiled.calculateClosestIntersection(fan);
+                assertEquals(expected == null ? null : expected.point, actual == null ? null : actual.point,
+                        "Grid must find the closest intersection");
+            }
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Hit beyond the maximal distance
+        assertNull(compiled.calculateClosestIntersection(ray, 4), "Grid must respect the maximum distance");
+
+        // TC12: Flat scene (all the primitives in one plane) gets a single voxel across it
+        Geometries flatScene = new Geometries(
+                new Triangle(new Point(0, 0, 0), new Point(2, 0, 0), new Point(0, 2, 0)),
+                new Triangle(new Point(3, 3, 0), new Point(5, 3, 0), new Point(3, 5, 0)));
+        grid = flatScene.compileGrid();
+        assertEquals(1, grid.getResolution(2), "Flat axis must have a single voxel");
+
+        // TC13: Ray crossing the flat axis, and leaving through it without a hit
+        assertEquals(new Point(0.7, 0.7, 0),
+                flatScene.calculateClosestIntersection(new Ray(new Point(0.5, 0.5, 1), new Vector(0.2, 0.2, -1))).point,
+                "Grid must find intersections across a flat axis");
+        assertNull(flatScene.calculateClosestIntersection(new Ray(new Point(2.5, 2.5, 1), new Vector(0.1, 0, -1))),
+                "Ray leaving through the flat axis must have no intersection");
+
+        // TC14: Ray walking in the plane of a flat scene, along its flat axis' voxel
+        assertNull(flatScene.calculateIntersections(new Ray(new Point(-1, 1, 0), new Vector(1, 0.1, 0))),
+                "Ray in the plane of the faces must have no intersections");
+
+        // TC15: Collection with no bounded geometries
+        Geometries planes = new Geometries(new Plane(new Point(0, 0, -1), new Vector(0, 0, 1)));
+        assertNull(planes.compileGrid(), "No grid is built without bounded geometries");
+        assertEquals(1, planes.getGeometriesSize(), "Unbounded geometries must be kept");
+    }
+
+    /**
+     * Test method for {@link Geometries#compileGrid()}.
+     * Verifies the grid keeps unbounded geometries outside and matches the flat collection.
+     */
+    @Test
+    void testIntersectionsMatchFlat() {
+        Geometries flat = scatteredScene(8);
+        Geometries compiled = scatteredScene(8);
+        compiled.compileGrid();
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Grid replaces the bounded geometries, the plane stays outside
+        assertEquals(2, compiled.getGeometriesSize(), "Compiled collection must hold the grid and the plane");
+
+        // TC02: Same intersections and closest intersection for a fan of rays
+        assertMatchesFlat(flat, compiled, "Grid");
+    }
+}
@@ -235,4 +235,35 @@ class SphereTests {
                         new Vector(1, 0, 0)), 1),
                 "Error: Ray doesn't intersect — should return null");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link geometries.Sphere#calculateClosestIntersection(Ray, double)}.
+     */
+    @Test
+    void testCalculateClosestIntersection() {
+        Sphere sphere = new Sphere(new Point(0, 0, 1), 2);
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Ray crosses the sphere - the nearer point with its distance
+        Intersectable.Intersection closest = sphere.calculateClosestIntersection(
+                new Ray(new Point(0, 0, -3), new Vector(0, 0, 1)));
+        assertEquals(new Point(0, 0, -1), closest.point, "Wrong closest point");
+        assertEquals(2, closest.distance, DELTA, "Wrong distance of the closest point");
+
+        // TC02: Ray starts inside the sphere - the exit point
+        closest = sphere.calculateClosestIntersection(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)));
+        assertEquals(new Point(0, 0, 3), closest.point, "Wrong closest point from inside");
+        assertEquals(3, closest.distance, DELTA, "Wrong distance from inside");
+
+        // TC03: Ray misses the sphere
+        assertNull(sphere.calculateClosestIntersection(new Ray(new Point(3, 0, -3), new Vector(0, 0, 1))),
+                "Ray misses the sphere");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Nearer point beyond the maximal distance
+        assertNull(sphere.calculateClosestIntersection(new Ray(new Point(0, 0, -3), new Vector(0, 0, 1)), 1),
+                "Closest point beyond the distance must be rejected");
+    }
+}
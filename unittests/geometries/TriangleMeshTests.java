@@ -0,0 +1,152 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static geometries.IntersectionAssertions.size;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.TriangleMesh} class.
+ */
+class TriangleMeshTests {
+    /** Size of the height field grid, in vertices per side */
+    private static final int SIZE = 12;
+
+    /**
+     * Creates the vertices of a random height field grid.
+     *
+     * @return the vertices, row by row
+     */
+    private static Point[] vertices() {
+        Random random = new Random(947);
+        Point[] vertices = new Point[SIZE * SIZE];
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++)
+                vertices[i * SIZE + j] = new Point(i, j, random.nextDouble() * 3);
+        return vertices;
+    }
+
+    /**
+     * Creates the face indices of the height field grid, two faces per cell.
+     *
+     * @return the indices
+     */
+    private static int[] indices() {
+        int[] indices = new int[6 * (SIZE - 1) * (SIZE - 1)];
+        int k = 0;
+        for (int i = 0; i < SIZE - 1; i++)
+            for (int j = 0; j < SIZE - 1; j++) {
+                int v = i * SIZE + j;
+                indices[k++] = v;
+                indices[k++] = v + SIZE;
+                indices[k++] = v + 1;
+                indices[k++] = v + 1;
+                indices[k++] = v + SIZE;
+                indices[k++] = v + SIZE + 1;
+            }
+        return indices;
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#calculateIntersections(Ray)} and
+     * {@link TriangleMesh#calculateClosestIntersection(Ray)}.
+     */
+    @Test
+    void testIntersections() {
+        Point[] vertices = vertices();
+        int[] indices = indices();
+        Material material = new Material().setKT(0.4);
+        TriangleMesh mesh = new TriangleMesh(vertices, indices);
+        mesh.setMaterial(material);
+        Geometries triangles = new Geometries();
+        for (int k = 0; k < indices.length; k += 3)
+            triangles.add(new Triangle(vertices[indices[k]], vertices[indices[k + 1]], vertices[indices[k + 2]]));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Rays through the mesh find the same intersections as the separate triangles
+        Point origin = new Point(-4, -3, 9);
+        for (int i = 0; i < 20; i++)
+            for (int j = 0; j < 20; j++) {
+                Ray ray = new Ray(origin, new Vector(2 + i, 1.5 + j, -9));
+                assertEquals(size(triangles.calculateIntersections(ray)), size(mesh.calculateIntersections(ray)),
+                        "Mesh must find the intersections of its faces");
+                var expected = triangles.calculateClosestIntersection(ray);
+                var actual = mesh.calculateClosestIntersection(ray);
+                if (expected == null) {
+                    assertNull(actual, "Mesh must miss where its faces are missed");
+                    continue;
+                }
+                assertEquals(expected.point, actual.point, "Mesh must find the closest intersection");
+                assertEquals(expected.distance, actual.distance, 1e-10, "Mesh must find the closest distance");
+                assertEquals(expected.geometry.getNormal(expected.point), actual.geometry.getNormal(actual.point),
+                        "Face must have the normal of the triangle");
+                assertSame(material, actual.material, "Face must have the mesh material");
+            }
+
+        // TC02: Ray missing the mesh
+        assertNull(mesh.calculateIntersections(new Ray(new Point(-1, -1, 5), new Vector(-1, 0, 0))),
+                "Ray missing the mesh must have no intersections");
+
+        // TC03: Mesh in a compiled hierarchy is a single primitive
+        Geometries geometries = new Geometries(mesh, new Sphere(new Point(30, 30, 0), 1));
+        BVHBuilder.Statistics statistics = geometries.compileBVH();
+        assertEquals(2, statistics.primitives(), "Mesh must be a single primitive of the scene hierarchy");
+        Ray ray = new Ray(new Point(3.3, 4.6, 10), new Vector(0, 0, -1));
+        assertEquals(mesh.calculateClosestIntersection(ray).point, geometries.calculateClosestIntersection(ray).point,
+                "Compiled scene must find the mesh intersection");
+
+        // TC04: Normal of a point on the mesh
+        assertEquals(mesh.calculateClosestIntersection(ray).geometry.getNormal(null),
+                mesh.getNormal(mesh.calculateClosestIntersection(ray).point), "Mesh normal must be the face normal");
+
+        // TC05: The intersected face is intersected again by itself
+        Intersectable.Intersection closest = mesh.calculateClosestIntersection(ray);
+        assertEquals(closest.point, closest.geometry.calculateIntersections(ray).get(0).point,
+                "Intersected face must find the intersection of the mesh");
+        assertNull(closest.geometry.calculateIntersections(new Ray(new Point(3.3, 7.6, 10), new Vector(0, 0, -1))),
+                "Intersected face must not find the intersections of other faces");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Ray through a shared vertex is not an intersection of any face, as for triangles
+        Ray vertexRay = new Ray(vertices[5 * SIZE + 5].add(new Vector(0, 0, 10)), new Vector(0, 0, -1));
+        assertEquals(size(triangles.calculateIntersections(vertexRay)), size(mesh.calculateIntersections(vertexRay)),
+                "Mesh must exclude the vertices as triangles do");
+
+        // TC12: Intersection beyond the maximal distance
+        assertNull(mesh.calculateClosestIntersection(ray, 5), "Intersection beyond the distance must be ignored");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#TriangleMesh(double[], int[])}.
+     */
+    @Test
+    void testConstructor() {
+        double[] positions = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Correct mesh
+        TriangleMesh mesh = new TriangleMesh(positions, new int[]{0, 1, 2});
+        assertEquals(1, mesh.getFaceCount(), "Wrong amount of faces");
+        assertEquals(3, mesh.getVertexCount(), "Wrong amount of vertices");
+
+        // TC02: Index out of range
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[]{0, 1, 3}),
+                "Constructed a mesh with an index out of range");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: No faces
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[0]),
+                "Constructed a mesh without faces");
+
+        // TC12: Incomplete face
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[]{0, 1}),
+                "Constructed a mesh with an incomplete face");
+    }
+}
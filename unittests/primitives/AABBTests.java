@@ -63,6 +63,87 @@ class AABBTests {
         assertTrue(aabb.intersects(ray20), "TC20: Ray should intersect exactly at vertex");
     }
 
+    @Test
+    void testEntryDistance() {
+        AABB aabb = new AABB(-1, 1, 0, 1, 2, 2);
+
+        // ========== EP (Equivalence Partition) ==========
+
+        // TC01: Ray misses the box
+        Ray ray01 = new Ray(new Point(5, 0, 0), new Vector(4, 1, 0));
+        assertEquals(Double.POSITIVE_INFINITY, aabb.entryDistance(ray01, Double.POSITIVE_INFINITY),
+                "TC01: Ray should miss AABB");
+
+        // TC02: Ray enters the box from outside
+        Ray ray02 = new Ray(new Point(0, 1.5, -2), new Vector(0, 0, 1));
+        assertEquals(2, aabb.entryDistance(ray02, Double.POSITIVE_INFINITY), 1e-10,
+                "TC02: Wrong entry distance");
+
+        // TC03: Ray starts inside the box
+        Ray ray03 = new Ray(new Point(0, 1.5, 1), new Vector(1, 1, 1));
+        assertEquals(0, aabb.entryDistance(ray03, Double.POSITIVE_INFINITY), 1e-10,
+                "TC03: Entry distance should be zero from inside");
+
+        // TC04: Box lies behind the ray
+        Ray ray04 = new Ray(new Point(0, 1.5, 4), new Vector(0, 0, 1));
+        assertEquals(Double.POSITIVE_INFINITY, aabb.entryDistance(ray04, Double.POSITIVE_INFINITY),
+                "TC04: Box behind the ray should be missed");
+
+        // TC05: Box lies beyond the maximum distance
+        assertEquals(Double.POSITIVE_INFINITY, aabb.entryDistance(ray02, 1),
+                "TC05: Box beyond max distance should be missed");
+
+        // ========== Boundary Value Tests ==========
+
+        // TC11: Ray parallel to a face, inside the slab
+        Ray ray11 = new Ray(new Point(-3, 1.5, 1), new Vector(1, 0, 0));
+        assertEquals(2, aabb.entryDistance(ray11, Double.POSITIVE_INFINITY), 1e-10,
+                "TC11: Wrong entry distance for parallel ray");
+
+        // TC12: Ray hits a flat box
+        AABB flat = new AABB(0, 0, 0, 1, 1, 0);
+        Ray ray12 = new Ray(new Point(0.5, 0.5, 1), new Vector(0, 0, -1));
+        assertEquals(1, flat.entryDistance(ray12, Double.POSITIVE_INFINITY), 1e-10,
+                "TC12: Flat box should be hit");
+
+        // TC13: Box entry exactly at the maximum distance
+        assertEquals(2, aabb.entryDistance(ray02, 2), 1e-10,
+                "TC13: Box at max distance should be hit");
+    }
+
+    @Test
+    void testExitDistance() {
+        AABB aabb = new AABB(-1, 1, 0, 1, 2, 2);
+
+        // ========== EP (Equivalence Partition) ==========
+
+        // TC01: Ray misses the box
+        Ray ray01 = new Ray(new Point(5, 0, 0), new Vector(4, 1, 0));
+        assertEquals(Double.NEGATIVE_INFINITY, aabb.exitDistance(ray01, Double.POSITIVE_INFINITY),
+                "TC01: Ray should miss AABB");
+
+        // TC02: Ray crosses the box
+        Ray ray02 = new Ray(new Point(0, 1.5, -2), new Vector(0, 0, 1));
+        assertEquals(4, aabb.exitDistance(ray02, Double.POSITIVE_INFINITY), 1e-10,
+                "TC02: Wrong exit distance");
+
+        // TC03: Ray starts inside the box
+        Ray ray03 = new Ray(new Point(0, 1.5, 1), new Vector(1, 0, 0));
+        assertEquals(1, aabb.exitDistance(ray03, Double.POSITIVE_INFINITY), 1e-10,
+                "TC03: Wrong exit distance from inside");
+
+        // ========== Boundary Value Tests ==========
+
+        // TC11: Ray parallel to a face, on the face
+        Ray ray11 = new Ray(new Point(-3, 2, 1), new Vector(1, 0, 0));
+        assertEquals(4, aabb.exitDistance(ray11, Double.POSITIVE_INFINITY), 1e-10,
+                "TC11: Wrong exit distance for a ray on a face");
+
+        // TC12: Exit beyond the maximum distance is capped
+        assertEquals(3, aabb.exitDistance(ray02, 3), 1e-10,
+                "TC12: Exit distance should be capped by max distance");
+    }
+
     @Test
     void testSurround() {
         // Base AABB
@@ -0,0 +1,52 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link primitives.MutableVector} class.
+ */
+class MutableVectorTests {
+    /**
+     * Delta value for accuracy when comparing the numbers of type 'double' in
+     * assertEquals
+     */
+    private static final double DELTA = 0.000001;
+
+    /**
+     * Test method for the in-place operations of {@link primitives.MutableVector}.
+     */
+    @Test
+    void testOperations() {
+        MutableVector v = new MutableVector();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Difference of points, as Point.subtract
+        Point p1 = new Point(1, 2, 3);
+        Point p2 = new Point(-2, 4, 1);
+        assertEquals(p1.subtract(p2), v.setDifference(p1, p2).toVector(),
+                "ERROR: setDifference() wrong result");
+
+        // TC02: Adding a scaled vector, as Point.add and Vector.scale
+        Vector u = new Vector(1, -1, 2);
+        assertEquals(p1.add(u.scale(3)), v.set(p1).addScaled(u, 3).toPoint(),
+                "ERROR: addScaled() wrong result");
+
+        // TC03: Normalizing, as Vector.normalize
+        assertEquals(u.normalize(), v.set(u).normalize().toVector(), "ERROR: normalize() wrong result");
+
+        // TC04: Dot product, as Vector.dotProduct
+        assertEquals(u.dotProduct(new Vector(3, 1, 1)), v.set(3, 1, 1).dotProduct(u), DELTA,
+                "ERROR: dotProduct() wrong value");
+
+        // TC05: The operations update the same vector
+        assertSame(v, v.set(1, 1, 1).scale(2).normalize(), "ERROR: operations must update the vector in place");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A zero scratch vector is allowed, but cannot become an immutable vector
+        v.setDifference(p1, p1);
+        assertEquals(0, v.lengthSquared(), DELTA, "ERROR: difference of a point with itself must be zero");
+        assertThrows(IllegalArgumentException.class, v::toVector, "ERROR: zero vector must not be converted");
+    }
+}
@@ -84,4 +84,25 @@ class RayTests {
         assertEquals(ray_13.findClosestPoint(points_13), new Point(1, 0, 0),
                 "ERROR: findClosestPoint() should return other point");
     }
+
+    /**
+     * Test method for {@link Ray#getInverseX()} and {@link Ray#getSigns()}.
+     */
+    @Test
+    void testInverseDirection() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Direction with negative and positive components
+        Ray ray = new Ray(Point.ZERO, new Vector(-3, 4, 0.000001).scale(2));
+        assertEquals(-1 / 0.6, ray.getInverseX(), 1e-9, "Wrong inverse x-component");
+        assertEquals(1 / 0.8, ray.getInverseY(), 1e-9, "Wrong inverse y-component");
+        assertEquals(0b001, ray.getSigns() & 0b011, "Wrong sign bits");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Direction parallel to an axis - infinite inverse of the component's sign
+        Ray parallel = new Ray(Point.ZERO, new Vector(0, -1, 0));
+        assertEquals(Double.POSITIVE_INFINITY, parallel.getInverseX(), "Parallel x-component must be infinite");
+        assertEquals(-1, parallel.getInverseY(), "Wrong inverse y-component");
+        assertEquals(Double.POSITIVE_INFINITY, parallel.getInverseZ(), "Parallel z-component must be infinite");
+        assertEquals(0b010, parallel.getSigns(), "Only the y sign bit must be set");
+    }
 }
@@ -0,0 +1,59 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link primitives.Transform} class.
+ */
+class TransformTests {
+
+    /**
+     * Test method for {@link Transform#then(Transform)} and {@link Transform#inverse()}.
+     */
+    @Test
+    void testComposition() {
+        Transform transform = Transform.scaling(2)
+                .then(Transform.rotation(new Vector(0, 0, 1), 90))
+                .then(Transform.translation(1, 2, 3));
+
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Scale, then rotate about z, then translate
+        assertEquals(new Point(1, 4, 3), transform.transformPoint(new Point(1, 0, 0)), "Wrong transformed point");
+        assertEquals(new Vector(0, 2, 0), transform.transformVector(new Vector(1, 0, 0)),
+                "Directions must not be translated");
+
+        // TC02: The inverse maps back
+        assertEquals(new Point(1, 0, 0), transform.inverseTransformPoint(new Point(1, 4, 3)), "Wrong inverse point");
+        assertEquals(new Point(1, 0, 0), transform.inverse().transformPoint(new Point(1, 4, 3)),
+                "Wrong inverse transformation");
+
+        // TC03: Normals stay orthogonal to the surface under non-uniform scaling
+        Transform stretch = Transform.scaling(1, 4, 1);
+        Vector tangent = stretch.transformVector(new Vector(1, -1, 0));
+        Vector normal = stretch.transformNormal(new Vector(1, 1, 0));
+        assertEquals(0, tangent.dotProduct(normal), 0.000001, "Transformed normal must be orthogonal");
+        assertEquals(1, normal.length(), 0.000001, "Transformed normal must be normalized");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Singular transformation
+        assertThrows(IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1),
+                "Singular transformation must be rejected");
+    }
+
+    /**
+     * Test method for {@link Transform#transformBox(AABB)}.
+     */
+    @Test
+    void testTransformBox() {
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Box rotated by 90 degrees about z
+        AABB box = new AABB(0, 0, 0, 2, 1, 1);
+        assertEquals(new AABB(-1, 0, 0, 0, 2, 1),
+                Transform.rotation(new Vector(0, 0, 1), 90).transformBox(box), "Wrong rotated box");
+    }
+}
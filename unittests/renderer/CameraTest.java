@@ -1,7 +1,11 @@
 package renderer;
 
+import geometries.Sphere;
 import primitives.*;
 import org.junit.jupiter.api.Test;
+import scene.Scene;
+
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -91,4 +95,42 @@ class CameraTest {
         // BV01: set to a target on Y-axis without up
         assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setDirection(new Point(0, 10, 0)).build());
     }
+
+    /**
+     * Test method for {@link Camera.Builder#build()} with the {@link RayTracerType#GRID} ray tracer.
+     */
+    @Test
+    void testGridRayTracer() {
+        Scene scene = new Scene("Grid scene");
+        for (int i = 0; i < 5; i++)
+            scene.geometries.add(new Sphere(new Point(i * 3, 0, -20), 1));
+        cameraBuilder.setDirection(new Vector(0, 0, -1), Vector.AXIS_Y).setViewPlaneSize(4, 4).setResolution(2, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the grid is compiled for the camera, the scene geometries are left as they are
+        cameraBuilder.setRayTracer(scene, RayTracerType.GRID).build();
+        assertEquals(5, scene.geometries.getGeometriesSize(), "Grid camera must not compile the scene geometries");
+
+        // EP02: a grid camera with a BVH as well
+        assertThrows(IllegalArgumentException.class, () -> cameraBuilder.enableBVH().build(),
+                "Grid ray tracer must not be combined with a BVH");
+    }
+
+    /**
+     * Test method for
+     * {@link renderer.Camera.Builder#build()} with conflicting acceleration structures.
+     */
+    @Test
+    void testConflictingBVH() {
+        Scene scene = new Scene("BVH scene");
+        scene.geometries.add(new Sphere(new Point(0, 0, -20), 1), new Sphere(new Point(3, 0, -20), 1));
+        cameraBuilder.setDirection(new Vector(0, 0, -1), Vector.AXIS_Y).setViewPlaneSize(4, 4).setResolution(2, 2)
+                .setRayTracer(scene, RayTracerType.SIMPLE);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: a compact BVH loaded from the cache
+        assertThrows(IllegalArgumentException.class,
+                () -> cameraBuilder.enableCompactBVH().enableBVHCache(Path.of("bvh-cache")).build(),
+                "Compact BVH must not be combined with the BVH cache");
+    }
 }
@@ -0,0 +1,66 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import renderer.TileManager.Tile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.TileManager} class.
+ */
+class TileManagerTests {
+
+    /**
+     * Takes all the tiles of a manager and counts how many tiles cover each pixel.
+     *
+     * @param manager the tile manager
+     * @param rows    the amount of pixel rows
+     * @param cols    the amount of pixel columns
+     * @return the coverage of each pixel, row by row
+     */
+    private static int[][] coverage(TileManager manager, int rows, int cols) {
+        int[][] coverage = new int[rows][cols];
+        Tile tile;
+        while ((tile = manager.nextTile()) != null) {
+            for (int i = tile.row(); i < tile.row() + tile.height(); i++)
+                for (int j = tile.col(); j < tile.col() + tile.width(); j++)
+                    coverage[i][j]++;
+            manager.tileDone(tile);
+        }
+        return coverage;
+    }
+
+    /**
+     * Test method for {@link TileManager#nextTile()}.
+     */
+    @Test
+    void testNextTile() {
+        // ============ Equivalence Partitions Tests ==============
+
+        // TC01: Every pixel is covered by exactly one tile, with partial tiles at the edges
+        TileManager manager = new TileManager(50, 70, 16, 0);
+        assertEquals(20, manager.getTileCount(), "Wrong amount of tiles");
+        for (int[] row : coverage(manager, 50, 70))
+            for (int count : row)
+                assertEquals(1, count, "Every pixel must be rendered once");
+        assertNull(manager.nextTile(), "No tiles must be left");
+
+        // TC02: Tiles are taken in Morton order - the first four make a square
+        manager = new TileManager(64, 64, 16, 0);
+        assertEquals(new Tile(0, 0, 16, 16), manager.nextTile(), "Wrong first tile");
+        assertEquals(new Tile(16, 0, 16, 16), manager.nextTile(), "Wrong second tile");
+        assertEquals(new Tile(0, 16, 16, 16), manager.nextTile(), "Wrong third tile");
+        assertEquals(new Tile(16, 16, 16, 16), manager.nextTile(), "Wrong fourth tile");
+
+        // =============== Boundary Values Tests ==================
+
+        // TC11: Tile larger than the image
+        manager = new TileManager(5, 7, 32, 0);
+        assertEquals(new Tile(0, 0, 7, 5), manager.nextTile(), "Single tile must be the whole image");
+        assertNull(manager.nextTile(), "No tiles must be left");
+
+        // TC12: Tile size of zero
+        assertThrows(IllegalArgumentException.class, () -> new TileManager(5, 7, 0, 0),
+                "Constructed a manager with an empty tile");
+    }
+}